@@ -0,0 +1,165 @@
+package com.election.benchmark;
+
+import com.election.model.Candidate;
+import com.election.model.CandidateRoster;
+import com.election.ui.BallotPane;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.ListView;
+import javafx.stage.Stage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ballot screen with a large roster, rendered by the headless Monocle
+ * toolkit. Each operation runs on the FX thread and includes the CSS and
+ * layout pass that the next frame would need, which is where the cost of
+ * repainting cells shows up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dglass.platform=Monocle", "-Dmonocle.platform=Headless",
+        "-Dprism.order=sw", "-Delection.metrics.intervalSeconds=0" })
+public class BallotPaneBenchmark {
+    @Param({ "5000" })
+    public int candidates;
+
+    @Param({ "2", "50" })
+    public int lists;
+
+    private CandidateRoster roster;
+    private Stage stage;
+    private BallotPane pane;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Platform.startup(() -> { });
+        roster = BenchmarkData.largeRoster(lists, candidates);
+        random = new Random(BenchmarkData.SEED);
+        onFx(() -> {
+            pane = new BallotPane(roster);
+            stage = new Stage();
+            stage.setScene(new Scene(pane, 800, 600));
+            stage.show();
+            return null;
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        onFx(() -> {
+            stage.close();
+            return null;
+        });
+        Platform.exit();
+    }
+
+    // Building and laying out the whole ballot, as on startup or a config reload
+    @Benchmark
+    public int buildBallot() throws Exception {
+        return onFx(() -> {
+            pane.setRoster(roster);
+            layout();
+            return pane.getChildren().size();
+        });
+    }
+
+    // A voter fills the ballot, takes back their first choice and the kiosk resets
+    @Benchmark
+    public int fillDeselectReset() throws Exception {
+        return onFx(() -> {
+            List<String> listNames = new ArrayList<>(roster.getListNames());
+            int max = pane.maxSelectionsProperty().get();
+            Candidate first = null;
+            for (int i = 0; i < max; i++) {
+                List<Candidate> list = pane.getCandidates(listNames.get(random.nextInt(listNames.size())));
+                Candidate candidate = list.get(random.nextInt(list.size()));
+                if (candidate.getSelectionOrder() == 0) {
+                    pane.toggle(candidate);
+                    layout();
+                    if (first == null) {
+                        first = candidate;
+                    }
+                }
+            }
+            pane.toggle(first);
+            layout();
+            int selected = pane.getSelectionCount();
+            pane.clearSelection();
+            layout();
+            return selected;
+        });
+    }
+
+    // Taking back the first choice while every ranked candidate is on screen, so all of them renumber
+    @Benchmark
+    public int renumberVisible() throws Exception {
+        return onFx(() -> {
+            List<Candidate> list = pane.getCandidates(roster.getListNames().iterator().next());
+            int max = pane.maxSelectionsProperty().get();
+            for (int i = 0; i < max; i++) {
+                pane.toggle(list.get(i));
+            }
+            layout();
+            pane.toggle(list.get(0));
+            layout();
+            int renumbered = pane.getSelectionCount();
+            pane.clearSelection();
+            layout();
+            return renumbered;
+        });
+    }
+
+    // Scrolling to the far end of a list and selecting someone there
+    @Benchmark
+    public int scrollAndSelect() throws Exception {
+        return onFx(() -> {
+            ListView<?> view = (ListView<?>) pane.lookupAll(".list-view").stream()
+                    .filter(node -> ((ListView<?>) node).getItems().size() > 0
+                            && ((ListView<?>) node).getItems().get(0) instanceof Candidate)
+                    .reduce((a, b) -> b).orElseThrow();
+            int last = view.getItems().size() - 1;
+            view.scrollTo(last);
+            Candidate candidate = (Candidate) view.getItems().get(last);
+            pane.toggle(candidate);
+            layout();
+            pane.toggle(candidate);
+            view.scrollTo(0);
+            layout();
+            return last;
+        });
+    }
+
+    private void layout() {
+        pane.getScene().getRoot().applyCss();
+        pane.getScene().getRoot().layout();
+    }
+
+    private static <T> T onFx(Callable<T> work) throws Exception {
+        FutureTask<T> task = new FutureTask<>(work);
+        Platform.runLater(task);
+        return task.get(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,104 @@
+package com.election.benchmark;
+
+import com.election.model.Candidate;
+import com.election.model.CandidateRoster;
+import com.election.service.BallotGenerator;
+import com.election.service.DatabaseService;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Candidates, ballots and pre-populated databases shared by the benchmarks.
+ * Everything is derived from a fixed seed so runs stay comparable.
+ */
+final class BenchmarkData {
+    static final long SEED = 20240601L;
+    private static final String[] LISTS = { "listA", "listB" };
+    private static final int CANDIDATES_PER_LIST = 9;
+    private static final int POPULATE_BATCH = 10_000;
+
+    private BenchmarkData() {
+    }
+
+    static CandidateRoster standardRoster() {
+        Map<String, List<String>> lists = new LinkedHashMap<>();
+        for (String list : LISTS) {
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < CANDIDATES_PER_LIST; i++) {
+                names.add(list + " Candidate " + (i + 1));
+            }
+            lists.put(list, names);
+        }
+        return new CandidateRoster(1, 0, lists);
+    }
+
+    static Map<String, List<Candidate>> lists() {
+        return standardRoster().getAllCandidates();
+    }
+
+    // A config-sized roster: listCount lists named "list1".."listN", candidates spread evenly
+    static CandidateRoster largeRoster(int listCount, int candidates) {
+        Map<String, List<String>> lists = new LinkedHashMap<>();
+        for (int i = 0; i < candidates; i++) {
+            String list = "list" + (i % listCount + 1);
+            lists.computeIfAbsent(list, key -> new ArrayList<>()).add(list + " Candidate " + (i / listCount + 1));
+        }
+        return new CandidateRoster(1, System.currentTimeMillis(), lists, CandidateRoster.DEFAULT_MAX_SELECTIONS);
+    }
+
+    static List<Candidate> roster() {
+        List<Candidate> roster = new ArrayList<>();
+        for (List<Candidate> candidates : lists().values()) {
+            roster.addAll(candidates);
+        }
+        return roster;
+    }
+
+    // Seeded ballot source; ballots only, without a database behind it
+    static BallotGenerator generator() {
+        return new BallotGenerator(null, standardRoster(), SEED);
+    }
+
+    static File tempDirectory() {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "election-bench");
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return dir;
+    }
+
+    /**
+     * Opens a temp database holding exactly {@code sessions} ballots. The file
+     * is kept in the temp directory and reused by later forks and runs, since
+     * filling a million sessions takes over a minute.
+     */
+    static DatabaseService populated(int sessions) {
+        File dbFile = new File(tempDirectory(), "generated-" + sessions + ".db");
+        DatabaseService db = DatabaseService.open(dbFile.getPath());
+        long existing = db.getSavedSessionsPage(null, 1).getTotalCount();
+        if (existing == sessions) {
+            return db;
+        }
+
+        db.clearAllSelections();
+        try {
+            new BallotGenerator(db, standardRoster(), SEED).generate(sessions, POPULATE_BATCH, System.out);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not populate benchmark database " + dbFile, e);
+        }
+        return db;
+    }
+
+    static void deleteDatabase(File dbFile) {
+        // WAL mode leaves -wal and -shm files next to the database, and the ballot journal sits beside it
+        for (String suffix : new String[] { "", "-wal", "-shm" }) {
+            new File(dbFile.getPath() + suffix).delete();
+        }
+        DatabaseService.journalFileFor(dbFile.getPath()).delete();
+    }
+}
@@ -0,0 +1,42 @@
+package com.election.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Runs the benchmarks and writes the results as JSON to
+ * {@code results/jmh-<timestamp>.json}, so runs before and after a change can
+ * be compared. Accepts the usual JMH command line options, e.g. a benchmark
+ * name pattern or {@code -p sessions=1000}; {@code -rff} overrides the
+ * result file.
+ */
+public class BenchmarkRunner {
+    private static final String RESULTS_DIR = "results";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .resultFormat(ResultFormatType.JSON);
+
+        if (!commandLine.getResult().hasValue()) {
+            File resultsDir = new File(RESULTS_DIR);
+            if (!resultsDir.exists()) {
+                resultsDir.mkdirs();
+            }
+            String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+            options.result(RESULTS_DIR + "/jmh-" + timestamp + ".json");
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,67 @@
+package com.election.benchmark;
+
+import com.election.model.Candidate;
+import com.election.service.PdfService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing one selection report PDF into a temp directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfBenchmark {
+    @Param({ "1", "9" })
+    public int selections;
+
+    private File outputDir;
+    private PdfService pdfService;
+    private List<Candidate> ballot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        outputDir = Files.createTempDirectory(BenchmarkData.tempDirectory().toPath(), "pdf-").toFile();
+        pdfService = PdfService.forOutputDirectory(outputDir.getPath());
+
+        List<Candidate> roster = BenchmarkData.roster();
+        ballot = new ArrayList<>(selections);
+        for (int i = 0; i < selections; i++) {
+            Candidate candidate = roster.get(i);
+            candidate.setSelectionOrder(i + 1);
+            ballot.add(candidate);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pdfService.clearPdfs();
+        outputDir.delete();
+    }
+
+    @Benchmark
+    public String generateSelectionReport() {
+        return pdfService.generateSelectionReport(ballot);
+    }
+}
@@ -0,0 +1,94 @@
+package com.election.benchmark;
+
+import com.election.model.Candidate;
+import com.election.service.BallotGenerator;
+import com.election.service.DatabaseService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ballot save throughput, one ballot per transaction and in batches, against
+ * a fresh temp database per trial. Every commit also appends to the ballot
+ * journal; with journalSync the append is forced to disk, as on a kiosk, and
+ * that fsync is most of the cost of a single-ballot save.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PersistenceBenchmark {
+    private static final int BALLOT_POOL_SIZE = 1024;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({ "false", "true" })
+    public boolean journalSync;
+
+    private File dbFile;
+    private DatabaseService db;
+    private List<List<Candidate>> ballots;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dbFile = File.createTempFile("persistence-", ".db", BenchmarkData.tempDirectory());
+        dbFile.delete();
+        // Read when the journal is opened
+        System.setProperty("election.journal.sync", String.valueOf(journalSync));
+        db = DatabaseService.open(dbFile.getPath());
+
+        BallotGenerator generator = BenchmarkData.generator();
+        ballots = new ArrayList<>(BALLOT_POOL_SIZE);
+        for (int i = 0; i < BALLOT_POOL_SIZE; i++) {
+            ballots.add(generator.nextBallot());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+        BenchmarkData.deleteDatabase(dbFile);
+    }
+
+    private List<Candidate> nextBallot() {
+        List<Candidate> ballot = ballots.get(next);
+        next = (next + 1) % BALLOT_POOL_SIZE;
+        return ballot;
+    }
+
+    // One ballot per commit, as saved from the UI
+    @Benchmark
+    public void saveSelection() {
+        db.saveSelection(nextBallot());
+    }
+
+    // Ballots per second when many are committed together
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public boolean saveSelectionsBatch() {
+        List<List<Candidate>> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(nextBallot());
+        }
+        return db.saveSelections(batch);
+    }
+}
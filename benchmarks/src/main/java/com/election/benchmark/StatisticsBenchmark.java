@@ -0,0 +1,73 @@
+package com.election.benchmark;
+
+import com.election.model.SessionPage;
+import com.election.service.DatabaseService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the statistics dialog queries as the number of saved sessions
+ * grows. The populated databases are cached in the temp directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class StatisticsBenchmark {
+    private static final int PAGE_SIZE = 50;
+    private static final int PATTERN_LIMIT = 100;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int sessions;
+
+    private DatabaseService db;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = BenchmarkData.populated(sessions);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public Map<String, Integer> getCandidateStats() {
+        return db.getCandidateStats();
+    }
+
+    // Loads every session, so this grows linearly with the session count
+    @Benchmark
+    public List<Map<String, Object>> getSavedSessions() {
+        return db.getSavedSessions();
+    }
+
+    // First page as shown by the history tab
+    @Benchmark
+    public SessionPage getSavedSessionsPage() {
+        return db.getSavedSessionsPage(null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getIdenticalSelectionBatches() {
+        return db.getIdenticalSelectionBatches(PATTERN_LIMIT);
+    }
+}
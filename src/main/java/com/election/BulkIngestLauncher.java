@@ -0,0 +1,89 @@
+package com.election;
+
+import com.election.service.ConfigService;
+import com.election.service.DatabaseService;
+import com.election.service.IngestService;
+import com.election.service.LoggingService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * Headless entry point that loads transcribed ballots from a CSV or JSONL
+ * file into db/election.db without starting the UI.
+ *
+ * Usage: BulkIngestLauncher <ballots.csv|ballots.jsonl> [--batch-size N]
+ */
+public class BulkIngestLauncher {
+    private static final String USAGE = "Usage: BulkIngestLauncher <ballots.csv|ballots.jsonl> [--batch-size N]";
+    
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        
+        Path input = Paths.get(args[0]);
+        int batchSize = IngestService.DEFAULT_BATCH_SIZE;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                String option = args[i];
+                if (!option.equals("--batch-size")) {
+                    throw new IllegalArgumentException("Unknown argument: " + option);
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                try {
+                    batchSize = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+                }
+                if (batchSize <= 0) {
+                    throw new IllegalArgumentException(option + " must be at least 1, was " + batchSize);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        
+        if (!Files.isRegularFile(input)) {
+            System.err.println("Input file not found: " + input);
+            System.exit(1);
+        }
+        
+        DatabaseService databaseService = DatabaseService.getInstance();
+        LoggingService loggingService = LoggingService.getInstance();
+        int exitCode = 0;
+        
+        try {
+            IngestService ingestService = new IngestService(databaseService, 
+                    ConfigService.getInstance().loadRoster());
+            Map<String, Object> summary = ingestService.ingest(input, batchSize, System.out);
+            loggingService.log(String.format("Bulk ingest of %s: %d ballots accepted, %d rejected in %d ms",
+                    input, (long) summary.get("accepted"), (long) summary.get("rejected"),
+                    (long) summary.get("elapsedMs")));
+            
+            // Final per-candidate totals, highest first
+            System.out.println();
+            System.out.println("Final counts:");
+            databaseService.getCandidateStats().entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .forEach(entry -> System.out.printf("  %-40s %,d%n", entry.getKey(), entry.getValue()));
+        } catch (Exception e) {
+            System.err.println("Bulk ingest failed: " + e.getMessage());
+            e.printStackTrace();
+            loggingService.logError("bulk ingest", e);
+            exitCode = 1;
+        } finally {
+            databaseService.close();
+        }
+        
+        System.exit(exitCode);
+    }
+}
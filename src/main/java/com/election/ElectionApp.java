@@ -1,15 +1,17 @@
 package com.election;
 
 import com.election.model.Candidate;
+import com.election.service.BallotWriter;
 import com.election.service.ConfigService;
 import com.election.service.DatabaseService;
 import com.election.service.LoggingService;
+import com.election.service.MetricsRegistry;
 import com.election.service.PdfService;
-import com.election.ui.CandidateCell;
+import com.election.service.ReportPipeline;
+import com.election.ui.BallotPane;
 import com.election.ui.StatsDialog;
 import javafx.application.Application;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -21,10 +23,11 @@ import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 public class ElectionApp extends Application {
@@ -33,16 +36,14 @@ public class ElectionApp extends Application {
     private DatabaseService databaseService;
     private PdfService pdfService;
     private LoggingService loggingService;
-    
-    private ObservableList<Candidate> listACandidates;
-    private ObservableList<Candidate> listBCandidates;
-    private int currentSelectionCount = 0;
-    private int maxSelections = 9;
+    private BallotWriter ballotWriter;
+    private ReportPipeline reportPipeline;
     
     // UI elements we need to reference
+    private BallotPane ballotPane;
+    private Label instructionsLabel;
     private Label selectionCountLabel;
-    private ListView<Candidate> listAView;
-    private ListView<Candidate> listBView;
+    private Label receiptStatusLabel;
     
     @Override
     public void start(Stage primaryStage) {
@@ -51,12 +52,18 @@ public class ElectionApp extends Application {
         databaseService = DatabaseService.getInstance();
         pdfService = PdfService.getInstance();
         loggingService = LoggingService.getInstance();
+        ballotWriter = new BallotWriter(databaseService);
+        reportPipeline = new ReportPipeline(pdfService);
         
         loggingService.log("Application started");
+        // Pick up edits to config/names.json without a restart
+        configService.startWatching();
         
-        // Load candidate data
-        listACandidates = FXCollections.observableArrayList(configService.loadCandidatesFromList("listA"));
-        listBCandidates = FXCollections.observableArrayList(configService.loadCandidatesFromList("listB"));
+        // Candidate lists and the selection limit come from config/names.json
+        ballotPane = new BallotPane(configService.getRoster());
+        ballotPane.setOnLimitReached(limit -> showAlert("Maximum Selections Reached", 
+                "You cannot select more than " + limit + " candidates."));
+        configService.addChangeListener(roster -> Platform.runLater(() -> ballotPane.setRoster(roster)));
         
         // Create UI
         BorderPane root = new BorderPane();
@@ -67,50 +74,26 @@ public class ElectionApp extends Application {
         headerLabel.setFont(Font.font("System", FontWeight.BOLD, 24));
         headerLabel.setPadding(new Insets(0, 0, 10, 0));
         
-        Label instructionsLabel = new Label("Select up to 9 candidates in your preferred order:");
+        instructionsLabel = new Label();
         instructionsLabel.setFont(Font.font("System", FontWeight.NORMAL, 16));
         
         VBox headerBox = new VBox(10, headerLabel, instructionsLabel);
         headerBox.setAlignment(Pos.CENTER);
         root.setTop(headerBox);
         
-        // Candidate lists
-        listAView = createCandidateListView(listACandidates, "List A");
-        listBView = createCandidateListView(listBCandidates, "List B");
-        
-        // Set up grid for the lists
-        GridPane listsGrid = new GridPane();
-        listsGrid.setHgap(20);
-        listsGrid.setPadding(new Insets(10));
-        
-        // List A title and container
-        Label listALabel = new Label("List A");
-        listALabel.setFont(Font.font("System", FontWeight.BOLD, 18));
-        
-        VBox listABox = new VBox(10, listALabel, listAView);
-        listABox.setAlignment(Pos.TOP_CENTER);
-        GridPane.setHgrow(listABox, Priority.ALWAYS);
-        GridPane.setVgrow(listABox, Priority.ALWAYS);
-        
-        // List B title and container
-        Label listBLabel = new Label("List B");
-        listBLabel.setFont(Font.font("System", FontWeight.BOLD, 18));
-        
-        VBox listBBox = new VBox(10, listBLabel, listBView);
-        listBBox.setAlignment(Pos.TOP_CENTER);
-        GridPane.setHgrow(listBBox, Priority.ALWAYS);
-        GridPane.setVgrow(listBBox, Priority.ALWAYS);
-        
-        // Add list containers to grid
-        listsGrid.add(listABox, 0, 0);
-        listsGrid.add(listBBox, 1, 0);
-        
         // Selection counter
-        selectionCountLabel = new Label("Selections: 0 / 9");
+        selectionCountLabel = new Label();
         selectionCountLabel.setFont(Font.font("System", FontWeight.BOLD, 16));
+        ballotPane.selectionCountProperty().addListener((obs, old, count) -> updateSelectionCounter());
+        ballotPane.maxSelectionsProperty().addListener((obs, old, max) -> updateSelectionCounter());
+        updateSelectionCounter();
+        
+        // Receipt rendering status, filled in while the previous voter's PDF is written
+        receiptStatusLabel = new Label();
         
         // Set center content
-        VBox centerContent = new VBox(10, listsGrid, selectionCountLabel);
+        VBox centerContent = new VBox(10, ballotPane, selectionCountLabel, receiptStatusLabel);
+        VBox.setVgrow(ballotPane, Priority.ALWAYS);
         centerContent.setAlignment(Pos.CENTER);
         root.setCenter(centerContent);
         
@@ -135,6 +118,7 @@ public class ElectionApp extends Application {
         
         // Set up scene
         Scene scene = new Scene(root, 800, 600);
+        measureLayoutPulses(scene);
         primaryStage.setTitle("Election Application");
         primaryStage.setScene(scene);
         primaryStage.show();
@@ -146,135 +130,109 @@ public class ElectionApp extends Application {
         }
     }
     
-    private ListView<Candidate> createCandidateListView(ObservableList<Candidate> candidates, String listName) {
-        ListView<Candidate> listView = new ListView<>(candidates);
-        listView.setCellFactory(param -> new CandidateCell());
-        listView.setPrefHeight(400);
-        
-        // Handle selection
-        listView.setOnMouseClicked(e -> {
-            Candidate selectedCandidate = listView.getSelectionModel().getSelectedItem();
-            if (selectedCandidate != null) {
-                handleCandidateSelection(selectedCandidate);
-                listView.refresh(); // Refresh the list view to update the cell appearance
-            }
-        });
-        
-        return listView;
-    }
-    
-    private void handleCandidateSelection(Candidate candidate) {
-        int currentOrder = candidate.getSelectionOrder();
-        
-        if (currentOrder > 0) {
-            // Deselect candidate
-            loggingService.logDeselection(candidate.getName(), candidate.getList());
-            
-            // Update other candidates' order
-            updateCandidateOrders(currentOrder);
-            
-            // Reset this candidate's order
-            candidate.setSelectionOrder(0);
-            currentSelectionCount--;
-        } else {
-            // Check if we've reached the maximum selections
-            if (currentSelectionCount >= maxSelections) {
-                showAlert("Maximum Selections Reached", 
-                         "You cannot select more than " + maxSelections + " candidates.");
-                return;
-            }
-            
-            // Select candidate
-            currentSelectionCount++;
-            candidate.setSelectionOrder(currentSelectionCount);
-            
-            loggingService.logSelection(candidate.getName(), candidate.getList(), currentSelectionCount);
-        }
-        
-        // Update selection counter in UI
-        updateSelectionCounter();
-    }
-    
-    private void updateCandidateOrders(int removedOrder) {
-        // Update list A
-        for (Candidate c : listACandidates) {
-            if (c.getSelectionOrder() > removedOrder) {
-                c.setSelectionOrder(c.getSelectionOrder() - 1);
-            }
-        }
-        
-        // Update list B
-        for (Candidate c : listBCandidates) {
-            if (c.getSelectionOrder() > removedOrder) {
-                c.setSelectionOrder(c.getSelectionOrder() - 1);
-            }
-        }
+    // Times the CSS and layout part of every frame, which grows with the cells a change touches
+    private void measureLayoutPulses(Scene scene) {
+        MetricsRegistry.Timer pulseTimer = MetricsRegistry.getInstance().timer("ui.layoutPulse");
+        long[] pulseStart = new long[1];
+        scene.addPreLayoutPulseListener(() -> pulseStart[0] = System.nanoTime());
+        scene.addPostLayoutPulseListener(() -> pulseTimer.stop(pulseStart[0]));
     }
     
     private void updateSelectionCounter() {
-        selectionCountLabel.setText("Selections: " + currentSelectionCount + " / " + maxSelections);
+        int maxSelections = ballotPane.maxSelectionsProperty().get();
+        instructionsLabel.setText("Select up to " + maxSelections + " candidates in your preferred order:");
+        selectionCountLabel.setText("Selections: " + ballotPane.getSelectionCount() + " / " + maxSelections);
     }
     
     private void resetSelection() {
-        // Reset all candidates
-        for (Candidate c : listACandidates) {
-            c.setSelectionOrder(0);
-        }
-        
-        for (Candidate c : listBCandidates) {
-            c.setSelectionOrder(0);
-        }
-        
-        currentSelectionCount = 0;
-        updateSelectionCounter();
-        
-        // Refresh list views
-        listAView.refresh();
-        listBView.refresh();
+        ballotPane.clearSelection();
         
         loggingService.log("Selection reset");
     }
     
     private void saveSelection(Stage owner) {
-        if (currentSelectionCount == 0) {
+        if (ballotPane.getSelectionCount() == 0) {
             showAlert("No Selections", "Please select at least one candidate before saving.");
             return;
         }
         
-        // Get all selected candidates
-        List<Candidate> selectedCandidates = new ArrayList<>();
-        
-        for (Candidate c : listACandidates) {
-            if (c.getSelectionOrder() > 0) {
-                selectedCandidates.add(c);
+        // Already in selection order
+        List<Candidate> selectedCandidates = ballotPane.getSelectedCandidates();
+        
+        // Queue for the database writer, the future completes once the ballot is committed
+        long start = System.nanoTime();
+        int candidateCount = selectedCandidates.size();
+        CompletableFuture<String> saved = ballotWriter.submit(selectedCandidates);
+        
+        // Render the receipt in the background; both queues copy the candidates
+        CompletableFuture<String> report = reportPipeline.submit(selectedCandidates, 
+                fraction -> Platform.runLater(() -> receiptStatusLabel.setText(
+                        String.format("Rendering receipt... %.0f%%", fraction * 100))));
+        
+        // The next voter can start right away
+        resetSelection();
+        long responsiveMs = (System.nanoTime() - start) / 1_000_000;
+        receiptStatusLabel.setText("Selection submitted, rendering receipt...");
+        
+        saved.whenComplete((sessionId, error) -> {
+            if (error != null) {
+                // No receipt for a ballot that was never stored
+                report.cancel(true);
+                Platform.runLater(() -> {
+                    loggingService.logError("saveSelection",
+                            error instanceof Exception ? (Exception) error : new Exception(error));
+                    Alert alert = new Alert(Alert.AlertType.ERROR);
+                    alert.setTitle("Save Failed");
+                    alert.setHeaderText("Selection Could Not Be Saved");
+                    alert.setContentText("Your selection was not saved to the database: " + error.getMessage());
+                    alert.initOwner(owner);
+                    alert.showAndWait();
+                });
             }
-        }
+        });
         
-        for (Candidate c : listBCandidates) {
-            if (c.getSelectionOrder() > 0) {
-                selectedCandidates.add(c);
+        // Only reported as saved once the ballot is committed and its receipt written
+        saved.thenCombine(report, (sessionId, pdfPath) -> pdfPath).whenComplete((pdfPath, error) -> Platform.runLater(() -> {
+            long readyMs = (System.nanoTime() - start) / 1_000_000;
+            if (saved.isCompletedExceptionally()) {
+                receiptStatusLabel.setText("Selection not saved");
+                return;
             }
-        }
-        
-        // Sort by selection order
-        selectedCandidates.sort(Comparator.comparing(Candidate::getSelectionOrder));
-        
-        // Save to database
-        databaseService.saveSelection(selectedCandidates);
-        
-        // Generate PDF
-        String pdfPath = pdfService.generateSelectionReport(selectedCandidates);
-        
-        // Log
-        loggingService.logSave(selectedCandidates.size(), pdfPath);
-        
-        // Show success message
-        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-        alert.setTitle("Save Successful");
-        alert.setHeaderText("Selection Saved Successfully");
-        alert.setContentText("Your selection has been saved to the database and a PDF report has been generated at: " + pdfPath);
-        alert.initOwner(owner);
-        alert.showAndWait();
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                receiptStatusLabel.setText("Selection saved, receipt cancelled");
+                return;
+            }
+            if (cause != null) {
+                receiptStatusLabel.setText("Selection saved, receipt failed");
+                loggingService.logError("generateSelectionReport",
+                        cause instanceof Exception ? (Exception) cause : new Exception(cause));
+                Alert alert = new Alert(Alert.AlertType.ERROR);
+                alert.setTitle("Receipt Failed");
+                alert.setHeaderText("PDF Report Could Not Be Generated");
+                alert.setContentText("The PDF report for the last selection failed: " + cause.getMessage());
+                alert.initOwner(owner);
+                alert.showAndWait();
+                return;
+            }
+            
+            receiptStatusLabel.setText("Selection saved. PDF report: " + pdfPath);
+            loggingService.logSave(candidateCount, pdfPath);
+            loggingService.log(String.format("Receipt ready %d ms after Save, the UI was free again after %d ms",
+                    readyMs, responsiveMs));
+        }));
+    }
+    
+    @Override
+    public void stop() {
+        loggingService.log("Application stopped");
+        configService.stopWatching();
+        
+        // Finish queued receipts and commit whatever is still queued before closing the database
+        reportPipeline.shutdown(10_000);
+        ballotWriter.shutdown(10_000);
+        databaseService.close();
+        MetricsRegistry.getInstance().shutdown();
     }
     
     private void showStats(Stage owner) {
@@ -0,0 +1,121 @@
+package com.election;
+
+import com.election.service.BallotGenerator;
+import com.election.service.ConfigService;
+import com.election.service.DatabaseService;
+import com.election.service.LoggingService;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+/**
+ * Headless entry point that fills the database with reproducible synthetic
+ * ballots over the candidates in config/names.json, for load and scale tests.
+ *
+ * Usage: GenerateBallotsLauncher <count> [--seed N] [--batch-size N]
+ *        [--lengths w1,w2,...] [--skew S] [--list-loyalty P]
+ *        [--patterns N] [--pattern-share P] [--start yyyy-MM-dd] [--days N]
+ *        [--db path]
+ */
+public class GenerateBallotsLauncher {
+    private static final String USAGE = "Usage: GenerateBallotsLauncher <count> [--seed N] [--batch-size N] " +
+            "[--lengths w1,w2,...] [--skew S] [--list-loyalty P] [--patterns N] [--pattern-share P] " +
+            "[--start yyyy-MM-dd] [--days N] [--db path]";
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        long count = 0;
+        long seed = 1;
+        int batchSize = BallotGenerator.DEFAULT_BATCH_SIZE;
+        double[] lengths = null;
+        Double skew = null;
+        Double loyalty = null;
+        Integer patternCount = null;
+        Double patternShare = null;
+        long startMillis = BallotGenerator.DEFAULT_START_MILLIS;
+        int days = 30;
+        String dbPath = null;
+
+        try {
+            count = Long.parseLong(args[0]);
+            for (int i = 1; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--seed": seed = Long.parseLong(value); break;
+                    case "--batch-size": batchSize = Integer.parseInt(value); break;
+                    case "--lengths": lengths = parseWeights(value); break;
+                    case "--skew": skew = Double.parseDouble(value); break;
+                    case "--list-loyalty": loyalty = Double.parseDouble(value); break;
+                    case "--patterns": patternCount = Integer.parseInt(value); break;
+                    case "--pattern-share": patternShare = Double.parseDouble(value); break;
+                    case "--start":
+                        startMillis = LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+                        break;
+                    case "--days": days = Integer.parseInt(value); break;
+                    case "--db": dbPath = value; break;
+                    default: throw new IllegalArgumentException("Unknown argument: " + option);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        DatabaseService databaseService = dbPath != null ? DatabaseService.open(dbPath) : DatabaseService.getInstance();
+        LoggingService loggingService = LoggingService.getInstance();
+        int exitCode = 0;
+
+        try {
+            BallotGenerator generator = new BallotGenerator(databaseService,
+                    ConfigService.getInstance().loadRoster(), seed)
+                    .timeRange(startMillis, days * 24L * 60 * 60 * 1000);
+            if (lengths != null) {
+                generator.lengthWeights(lengths);
+            }
+            if (skew != null) {
+                generator.popularitySkew(skew);
+            }
+            if (loyalty != null) {
+                generator.listLoyalty(loyalty);
+            }
+            if (patternCount != null) {
+                generator.patternCount(patternCount);
+            }
+            if (patternShare != null) {
+                generator.patternShare(patternShare);
+            }
+
+            Map<String, Object> summary = generator.generate(count, batchSize, System.out);
+            loggingService.log(String.format("Generated %d synthetic ballots (seed %d) in %d ms",
+                    (long) summary.get("ballots"), seed, (long) summary.get("elapsedMs")));
+        } catch (Exception e) {
+            System.err.println("Ballot generation failed: " + e.getMessage());
+            e.printStackTrace();
+            loggingService.logError("ballot generation", e);
+            exitCode = 1;
+        } finally {
+            databaseService.close();
+        }
+
+        System.exit(exitCode);
+    }
+
+    private static double[] parseWeights(String value) {
+        String[] parts = value.split(",");
+        double[] weights = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            weights[i] = Double.parseDouble(parts[i].trim());
+        }
+        return weights;
+    }
+}
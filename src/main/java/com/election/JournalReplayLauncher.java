@@ -0,0 +1,95 @@
+package com.election;
+
+import com.election.service.BallotJournal;
+import com.election.service.DatabaseService;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Headless entry point that reads a ballot journal, reports how much of it is
+ * intact and how fast it replays, and optionally rebuilds a database from it.
+ *
+ * Usage: JournalReplayLauncher [journal] [--rebuild new.db] [--tallies]
+ */
+public class JournalReplayLauncher {
+    private static final String USAGE = "Usage: JournalReplayLauncher [journal] [--rebuild new.db] [--tallies]";
+
+    public static void main(String[] args) {
+        File journalFile = DatabaseService.defaultJournalFile();
+        String rebuildPath = null;
+        boolean tallies = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--rebuild":
+                        if (i + 1 >= args.length) {
+                            throw new IllegalArgumentException("Missing value for --rebuild");
+                        }
+                        rebuildPath = args[++i];
+                        break;
+                    case "--tallies": tallies = true; break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                        }
+                        journalFile = new File(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        if (!journalFile.exists()) {
+            System.err.println("No ballot journal at " + journalFile);
+            System.exit(1);
+        }
+        if (rebuildPath != null && new File(rebuildPath).exists()) {
+            System.err.println("Refusing to rebuild into existing database " + rebuildPath);
+            System.exit(1);
+        }
+
+        int exitCode = 0;
+        try {
+            Map<String, Object> summary;
+            if (rebuildPath != null) {
+                DatabaseService target = DatabaseService.open(rebuildPath);
+                try {
+                    summary = BallotJournal.rebuild(journalFile, target);
+                } finally {
+                    target.close();
+                }
+                System.out.println("Rebuilt " + rebuildPath + " from " + journalFile);
+            } else {
+                // Decoding every ballot into tallies gives a realistic replay rate
+                summary = new TreeMap<>();
+                Map<String, Long> counts = BallotJournal.replayTallies(journalFile, summary);
+                if (tallies) {
+                    new TreeMap<>(counts).forEach((candidate, count) ->
+                            System.out.printf("%8d  %s%n", count, candidate));
+                }
+            }
+
+            System.out.printf("%,d records (%,d saves, %,d deletes, %,d clears), %,d bytes in %,d ms%n",
+                    summary.get("records"), summary.get("saves"), summary.get("deletes"), summary.get("clears"),
+                    summary.get("bytes"), summary.get("elapsedMs"));
+            System.out.printf("%,.0f records/s, %,.1f MB/s%n",
+                    summary.get("recordsPerSecond"), summary.get("megabytesPerSecond"));
+            long corruptAt = (long) summary.get("corruptAt");
+            if (corruptAt >= 0) {
+                System.out.println("Journal is damaged from byte " + corruptAt + "; records before it were replayed");
+                exitCode = 2;
+            }
+        } catch (Exception e) {
+            System.err.println("Journal replay failed: " + e.getMessage());
+            e.printStackTrace();
+            exitCode = 1;
+        }
+
+        System.exit(exitCode);
+    }
+}
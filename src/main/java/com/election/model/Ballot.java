@@ -0,0 +1,32 @@
+package com.election.model;
+
+import java.util.List;
+
+public class Ballot {
+    private final String sessionId;
+    private final String timestamp;
+    private final List<Candidate> candidates;
+
+    public Ballot(String sessionId, String timestamp, List<Candidate> candidates) {
+        this.sessionId = sessionId;
+        this.timestamp = timestamp;
+        this.candidates = candidates;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    // Candidates in selection order
+    public List<Candidate> getCandidates() {
+        return candidates;
+    }
+
+    public int size() {
+        return candidates.size();
+    }
+}
@@ -0,0 +1,128 @@
+package com.election.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One parsed version of the candidate configuration. Immutable, so it can be
+ * shared between threads and swapped out whole when the file changes.
+ *
+ * Lists keep their file order and candidates their position in the list.
+ * Callers get fresh Candidate objects, since the UI sets selection orders on
+ * the ones it holds.
+ */
+public final class CandidateRoster {
+    public static final int DEFAULT_MAX_SELECTIONS = 9;
+
+    private final long version;
+    private final long loadedAtMillis;
+    private final int maxSelections;
+    private final Map<String, List<String>> lists;
+    // list -> name -> position, for lookups by name
+    private final Map<String, Map<String, Integer>> positions;
+    private final int size;
+
+    public CandidateRoster(long version, long loadedAtMillis, Map<String, List<String>> lists) {
+        this(version, loadedAtMillis, lists, DEFAULT_MAX_SELECTIONS);
+    }
+
+    public CandidateRoster(long version, long loadedAtMillis, Map<String, List<String>> lists, int maxSelections) {
+        if (maxSelections < 1) {
+            throw new IllegalArgumentException("maxSelections must be at least 1, was " + maxSelections);
+        }
+        this.version = version;
+        this.loadedAtMillis = loadedAtMillis;
+        this.maxSelections = maxSelections;
+
+        Map<String, List<String>> copied = new LinkedHashMap<>();
+        Map<String, Map<String, Integer>> indexed = new HashMap<>();
+        int total = 0;
+        for (Map.Entry<String, List<String>> entry : lists.entrySet()) {
+            List<String> names = Collections.unmodifiableList(new ArrayList<>(entry.getValue()));
+            Map<String, Integer> byName = new HashMap<>();
+            for (int i = 0; i < names.size(); i++) {
+                byName.putIfAbsent(names.get(i), i);
+            }
+            copied.put(entry.getKey(), names);
+            total += names.size();
+            indexed.put(entry.getKey(), Collections.unmodifiableMap(byName));
+        }
+        this.lists = Collections.unmodifiableMap(copied);
+        this.positions = Collections.unmodifiableMap(indexed);
+        this.size = total;
+    }
+
+    // Increases by one with every successful load
+    public long getVersion() {
+        return version;
+    }
+
+    public long getLoadedAtMillis() {
+        return loadedAtMillis;
+    }
+
+    // How many candidates one ballot may rank, never more than there are candidates
+    public int getMaxSelections() {
+        return Math.min(maxSelections, size());
+    }
+
+    // Same lists in the same order, same names and limit, whatever the version
+    public boolean hasSameContent(CandidateRoster other) {
+        return maxSelections == other.maxSelections && lists.equals(other.lists)
+                && new ArrayList<>(lists.keySet()).equals(new ArrayList<>(other.lists.keySet()));
+    }
+
+    public CandidateRoster withVersion(long newVersion, long newLoadedAtMillis) {
+        return new CandidateRoster(newVersion, newLoadedAtMillis, lists, maxSelections);
+    }
+
+    public Set<String> getListNames() {
+        return lists.keySet();
+    }
+
+    // Display title: "listA" becomes "List A", other keys are shown as written
+    public static String titleOf(String listName) {
+        if (listName.length() > 4 && listName.startsWith("list") && Character.isUpperCase(listName.charAt(4))) {
+            return "List " + listName.substring(4);
+        }
+        return listName;
+    }
+
+    public List<String> getNames(String listName) {
+        List<String> names = lists.get(listName);
+        return names != null ? names : Collections.emptyList();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Position of the candidate in its list, or -1 if it is not on it
+    public int indexOf(String listName, String name) {
+        Map<String, Integer> byName = positions.get(listName);
+        Integer index = byName != null ? byName.get(name) : null;
+        return index != null ? index : -1;
+    }
+
+    public List<Candidate> getCandidates(String listName) {
+        List<String> names = getNames(listName);
+        List<Candidate> candidates = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            candidates.add(new Candidate(names.get(i), listName, i));
+        }
+        return candidates;
+    }
+
+    public Map<String, List<Candidate>> getAllCandidates() {
+        Map<String, List<Candidate>> all = new LinkedHashMap<>();
+        for (String listName : lists.keySet()) {
+            all.put(listName, getCandidates(listName));
+        }
+        return all;
+    }
+}
@@ -0,0 +1,303 @@
+package com.election.model;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Distinct elements in rank order, ranked 1 to size(). Adding, inserting at
+ * a rank, removing, moving to another rank and looking up an element's rank
+ * or the element at a rank all take O(log n). No ranks are stored: a rank is
+ * one more than the number of elements before it, so nothing is renumbered.
+ *
+ * Kept as an implicit treap, a randomly balanced tree ordered by position
+ * whose nodes count their subtree, plus a map from element to node. Elements
+ * are told apart by equals(). Not thread-safe.
+ */
+public final class RankedSelection<E> implements Iterable<E> {
+    private static final class Node<E> {
+        final E element;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        Node<E> left;
+        Node<E> right;
+        Node<E> parent;
+        int size = 1;
+
+        Node(E element) {
+            this.element = element;
+        }
+
+        void update() {
+            size = 1 + sizeOf(left) + sizeOf(right);
+            if (left != null) {
+                left.parent = this;
+            }
+            if (right != null) {
+                right.parent = this;
+            }
+        }
+    }
+
+    private final Map<E, Node<E>> nodes = new HashMap<>();
+    private Node<E> root;
+
+    public int size() {
+        return sizeOf(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public boolean contains(E element) {
+        return nodes.containsKey(element);
+    }
+
+    // Rank of the element, or 0 if it is not selected
+    public int rankOf(E element) {
+        Node<E> node = nodes.get(element);
+        return node != null ? positionOf(node) : 0;
+    }
+
+    public E get(int rank) {
+        return nodeAt(checkRank(rank, size())).element;
+    }
+
+    // Adds the element at the next rank; false if it is already selected
+    public boolean add(E element) {
+        return insert(size() + 1, element);
+    }
+
+    /**
+     * Inserts the element at the rank, moving the elements from that rank on
+     * down one. False, changing nothing, if it is already selected.
+     */
+    public boolean insert(int rank, E element) {
+        checkRank(rank, size() + 1);
+        if (nodes.containsKey(element)) {
+            return false;
+        }
+        Node<E> node = new Node<>(element);
+        nodes.put(element, node);
+        link(node, rank);
+        return true;
+    }
+
+    // Removes the element and moves the ones after it up; returns its rank, or 0 if it was not selected
+    public int remove(E element) {
+        Node<E> node = nodes.remove(element);
+        if (node == null) {
+            return 0;
+        }
+        int rank = positionOf(node);
+        unlink(rank);
+        return rank;
+    }
+
+    // Moves a selected element to the rank, shifting the ones in between; returns its old rank, or 0
+    public int move(E element, int rank) {
+        Node<E> node = nodes.get(element);
+        if (node == null) {
+            return 0;
+        }
+        checkRank(rank, size());
+        int oldRank = positionOf(node);
+        if (oldRank != rank) {
+            unlink(oldRank);
+            node.left = null;
+            node.right = null;
+            node.size = 1;
+            link(node, rank);
+        }
+        return oldRank;
+    }
+
+    public void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    // The elements in rank order; the list is a copy
+    public List<E> toList() {
+        List<E> list = new ArrayList<>(size());
+        for (E element : this) {
+            list.add(element);
+        }
+        return list;
+    }
+
+    // Calls the action with every element and its rank, in rank order
+    public void forEachRanked(ObjIntConsumer<? super E> action) {
+        forEachRanked(1, size(), action);
+    }
+
+    // Calls the action with the elements ranked from first to last inclusive, in O(log n) plus one step each
+    public void forEachRanked(int first, int last, ObjIntConsumer<? super E> action) {
+        if (first > last) {
+            return;
+        }
+        checkRank(first, size());
+        checkRank(last, size());
+        Node<E> node = nodeAt(first);
+        for (int rank = first; rank <= last; rank++) {
+            action.accept(node.element, rank);
+            node = successor(node);
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Deque<Node<E>> path = new ArrayDeque<>();
+        for (Node<E> node = root; node != null; node = node.left) {
+            path.push(node);
+        }
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<E> node = path.pop();
+                for (Node<E> next = node.right; next != null; next = next.left) {
+                    path.push(next);
+                }
+                return node.element;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+    private void link(Node<E> node, int rank) {
+        Node<E>[] parts = split(root, rank - 1);
+        setRoot(merge(merge(parts[0], node), parts[1]));
+    }
+
+    private void unlink(int rank) {
+        Node<E>[] before = split(root, rank - 1);
+        Node<E>[] removed = split(before[1], 1);
+        setRoot(merge(before[0], removed[1]));
+    }
+
+    private void setRoot(Node<E> node) {
+        root = node;
+        if (node != null) {
+            node.parent = null;
+        }
+    }
+
+    private static int positionOf(Node<?> node) {
+        int rank = sizeOf(node.left) + 1;
+        for (Node<?> child = node, parent = node.parent; parent != null; child = parent, parent = parent.parent) {
+            if (parent.right == child) {
+                rank += sizeOf(parent.left) + 1;
+            }
+        }
+        return rank;
+    }
+
+    private Node<E> nodeAt(int rank) {
+        Node<E> node = root;
+        int remaining = rank;
+        while (true) {
+            int leftSize = sizeOf(node.left);
+            if (remaining <= leftSize) {
+                node = node.left;
+            } else if (remaining == leftSize + 1) {
+                return node;
+            } else {
+                remaining -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private static <E> Node<E> successor(Node<E> node) {
+        if (node.right != null) {
+            Node<E> next = node.right;
+            while (next.left != null) {
+                next = next.left;
+            }
+            return next;
+        }
+        Node<E> child = node;
+        Node<E> parent = node.parent;
+        while (parent != null && parent.right == child) {
+            child = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    // Splits off the first count elements: [first count, the rest]
+    private static <E> Node<E>[] split(Node<E> node, int count) {
+        if (node == null) {
+            return pair(null, null);
+        }
+        if (sizeOf(node.left) >= count) {
+            Node<E>[] parts = split(node.left, count);
+            node.left = parts[1];
+            node.update();
+            if (parts[0] != null) {
+                parts[0].parent = null;
+            }
+            return pair(parts[0], node);
+        }
+        Node<E>[] parts = split(node.right, count - sizeOf(node.left) - 1);
+        node.right = parts[0];
+        node.update();
+        if (parts[1] != null) {
+            parts[1].parent = null;
+        }
+        return pair(node, parts[1]);
+    }
+
+    // Generic arrays cannot be created directly, the raw array only ever holds nodes of E
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <E> Node<E>[] pair(Node<E> first, Node<E> second) {
+        return new Node[] { first, second };
+    }
+
+    private static <E> Node<E> merge(Node<E> first, Node<E> second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            first.update();
+            return first;
+        }
+        second.left = merge(first, second.left);
+        second.update();
+        return second;
+    }
+
+    private static int sizeOf(Node<?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static int checkRank(int rank, int max) {
+        if (rank < 1 || rank > max) {
+            throw new IndexOutOfBoundsException("rank " + rank + " is not between 1 and " + max);
+        }
+        return rank;
+    }
+}
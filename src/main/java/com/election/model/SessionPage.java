@@ -0,0 +1,48 @@
+package com.election.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of saved sessions, newest first. The last session on the page is
+ * the keyset cursor for fetching the next page.
+ */
+public class SessionPage {
+    private final List<Map<String, Object>> sessions;
+    private final int totalCount;
+    private final int firstNumber;
+    private final boolean hasMore;
+
+    public SessionPage(List<Map<String, Object>> sessions, int totalCount, int firstNumber, boolean hasMore) {
+        this.sessions = sessions;
+        this.totalCount = totalCount;
+        this.firstNumber = firstNumber;
+        this.hasMore = hasMore;
+    }
+
+    public List<Map<String, Object>> getSessions() {
+        return sessions;
+    }
+
+    // Total number of saved sessions, not just the ones on this page
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    // Display number ("Generated List #n") of the first session on this page
+    public int getFirstNumber() {
+        return firstNumber;
+    }
+
+    public int getNextNumber() {
+        return firstNumber + sessions.size();
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public Map<String, Object> getLastSession() {
+        return sessions.isEmpty() ? null : sessions.get(sessions.size() - 1);
+    }
+}
@@ -0,0 +1,31 @@
+package com.election.service;
+
+/**
+ * 64-bit FNV-1a hash of a ballot's ordered (candidate id, selection order)
+ * pairs. Two ballots with the same candidates in the same order always get
+ * the same fingerprint, so identical patterns can be found with a GROUP BY.
+ */
+final class BallotFingerprint {
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+
+    // Pairs must be added in selection order
+    BallotFingerprint add(int candidateId, int selectionOrder) {
+        mix(candidateId);
+        mix(selectionOrder);
+        return this;
+    }
+
+    long value() {
+        return hash;
+    }
+
+    private void mix(int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash ^= (value >>> shift) & 0xff;
+            hash *= PRIME;
+        }
+    }
+}
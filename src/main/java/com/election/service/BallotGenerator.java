@@ -0,0 +1,274 @@
+package com.election.service;
+
+import com.election.model.Ballot;
+import com.election.model.Candidate;
+import com.election.model.CandidateRoster;
+
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Produces reproducible synthetic ballots for load and scale testing.
+ *
+ * The same seed and settings always give the same ballots and timestamps.
+ * Session ids come from the database and start after the newest stored
+ * session, so only on an empty database are they the same run to run.
+ * Each candidate gets a popularity weight that falls off with a seeded rank,
+ * and ballots are drawn by weighted sampling without replacement, so popular
+ * candidates are picked more often and also ranked higher. After the first
+ * pick a voter stays on the same list with the configured loyalty. A share of
+ * ballots copies one of a small pool of popular patterns verbatim, which gives
+ * getIdenticalSelectionBatches something to find.
+ */
+public class BallotGenerator {
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    public static final long DEFAULT_START_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int PROGRESS_INTERVAL = 100_000;
+
+    private final DatabaseService databaseService;
+    private final List<Candidate> roster = new ArrayList<>();
+    private final int maxSelections;
+    private final long seed;
+
+    // Relative weight of each ballot length, index 0 is a single selection
+    private double[] lengthWeights = { 2, 2, 3, 4, 5, 6, 8, 10, 20 };
+    private double popularitySkew = 1.0;
+    private double listLoyalty = 0.7;
+    private int patternCount = 20;
+    private double patternShare = 0.1;
+    private long startMillis = DEFAULT_START_MILLIS;
+    private long spreadMillis = 30L * 24 * 60 * 60 * 1000;
+
+    // Built on first use from the settings above
+    private Random random;
+    private double[] popularity;
+    private int[] listOf;
+    private List<int[]> patterns;
+    private double[] patternWeights;
+    private long ballotCount;
+    private long ballotsToSpread;
+
+    public BallotGenerator(DatabaseService databaseService, CandidateRoster candidates, long seed) {
+        this.databaseService = databaseService;
+        this.seed = seed;
+        for (List<Candidate> list : candidates.getAllCandidates().values()) {
+            roster.addAll(list);
+        }
+        if (roster.isEmpty()) {
+            throw new IllegalArgumentException("No candidates to generate ballots for");
+        }
+        // The default lengths go up to 9, never past the configured limit
+        this.maxSelections = candidates.getMaxSelections();
+        if (lengthWeights.length > maxSelections) {
+            lengthWeights = Arrays.copyOf(lengthWeights, maxSelections);
+        }
+    }
+
+    public BallotGenerator lengthWeights(double... weights) {
+        if (weights.length == 0 || weights.length > maxSelections) {
+            throw new IllegalArgumentException("Between 1 and " + maxSelections + " length weights are needed");
+        }
+        this.lengthWeights = weights.clone();
+        return this;
+    }
+
+    // 0 makes every candidate equally likely; higher values favour the top few
+    public BallotGenerator popularitySkew(double skew) {
+        this.popularitySkew = skew;
+        return this;
+    }
+
+    // Chance that each pick after the first comes from the first pick's list
+    public BallotGenerator listLoyalty(double loyalty) {
+        this.listLoyalty = loyalty;
+        return this;
+    }
+
+    // Number of distinct repeated patterns; 0 turns them off
+    public BallotGenerator patternCount(int count) {
+        this.patternCount = count;
+        return this;
+    }
+
+    // Share of ballots that copy one of the patterns
+    public BallotGenerator patternShare(double share) {
+        this.patternShare = share;
+        return this;
+    }
+
+    // Ballots are spread evenly, with random gaps, over [start, start + spread)
+    public BallotGenerator timeRange(long startMillis, long spreadMillis) {
+        this.startMillis = startMillis;
+        this.spreadMillis = spreadMillis;
+        return this;
+    }
+
+    /**
+     * Generates and saves {@code count} ballots in transactions of
+     * {@code batchSize}, printing progress to {@code out}. The returned map
+     * holds the ballot and selection counts, elapsed time and throughput.
+     */
+    public Map<String, Object> generate(long count, int batchSize, PrintStream out) throws SQLException {
+        reset(count);
+        List<Ballot> batch = new ArrayList<>(batchSize);
+        long written = 0;
+        long selections = 0;
+        long start = System.nanoTime();
+
+        while (written < count) {
+            batch.clear();
+            int size = (int) Math.min(batchSize, count - written);
+            for (int i = 0; i < size; i++) {
+                long at = nextTimestamp();
+                List<Candidate> ballot = nextBallot();
+                selections += ballot.size();
+                batch.add(databaseService.newBallot(ballot, at));
+            }
+            databaseService.persist(batch);
+            written += size;
+
+            if (written % PROGRESS_INTERVAL < batchSize) {
+                out.printf("%,d ballots generated (%,.0f selections/min)%n",
+                        written, selections * 60 / seconds(start));
+            }
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        out.printf("Generated %,d ballots with %,d selections in %,d ms (%,.0f selections/min)%n",
+                written, selections, elapsedMs, selections * 60 / seconds(start));
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("ballots", written);
+        summary.put("selections", selections);
+        summary.put("elapsedMs", elapsedMs);
+        summary.put("selectionsPerMinute", selections * 60 / seconds(start));
+        return summary;
+    }
+
+    /**
+     * Next ballot from the seeded sequence, ranked and ready to save. Useful on
+     * its own for tests and benchmarks that need ballots without a database.
+     */
+    public List<Candidate> nextBallot() {
+        if (random == null) {
+            reset(0);
+        }
+
+        int[] picks;
+        if (!patterns.isEmpty() && random.nextDouble() < patternShare) {
+            picks = patterns.get(pick(patternWeights));
+        } else {
+            picks = drawBallot();
+        }
+
+        List<Candidate> ballot = new ArrayList<>(picks.length);
+        for (int i = 0; i < picks.length; i++) {
+            Candidate source = roster.get(picks[i]);
+            Candidate selected = new Candidate(source.getName(), source.getList(), source.getIndex());
+            selected.setSelectionOrder(i + 1);
+            ballot.add(selected);
+        }
+        return ballot;
+    }
+
+    // Restarts the sequence; count is only used to space out timestamps
+    private void reset(long count) {
+        random = new Random(seed);
+        ballotCount = 0;
+        ballotsToSpread = Math.max(count, 1);
+
+        // Seeded shuffle of candidates into popularity ranks
+        int[] rankOf = new int[roster.size()];
+        for (int i = 0; i < rankOf.length; i++) {
+            rankOf[i] = i;
+        }
+        for (int i = rankOf.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = rankOf[i];
+            rankOf[i] = rankOf[j];
+            rankOf[j] = swap;
+        }
+        popularity = new double[roster.size()];
+        listOf = new int[roster.size()];
+        Map<String, Integer> listIds = new LinkedHashMap<>();
+        for (int i = 0; i < roster.size(); i++) {
+            popularity[i] = 1.0 / Math.pow(rankOf[i] + 1, popularitySkew);
+            listOf[i] = listIds.computeIfAbsent(roster.get(i).getList(), list -> listIds.size());
+        }
+
+        // Pattern i is repeated in proportion to 1 / (i + 1)
+        patterns = new ArrayList<>(patternCount);
+        patternWeights = new double[patternCount];
+        for (int i = 0; i < patternCount; i++) {
+            patterns.add(drawBallot());
+            patternWeights[i] = 1.0 / (i + 1);
+        }
+    }
+
+    private int[] drawBallot() {
+        int length = Math.min(pick(lengthWeights) + 1, roster.size());
+        int[] picks = new int[length];
+        boolean[] taken = new boolean[roster.size()];
+        double[] weights = new double[roster.size()];
+
+        for (int rank = 0; rank < length; rank++) {
+            // Loyal picks only consider the first pick's list while it has candidates left
+            boolean loyal = rank > 0 && random.nextDouble() < listLoyalty;
+            double total = 0;
+            for (int c = 0; c < weights.length; c++) {
+                boolean allowed = !taken[c] && (!loyal || listOf[c] == listOf[picks[0]]);
+                weights[c] = allowed ? popularity[c] : 0;
+                total += weights[c];
+            }
+            if (total == 0) {
+                for (int c = 0; c < weights.length; c++) {
+                    weights[c] = taken[c] ? 0 : popularity[c];
+                }
+            }
+
+            int chosen = pick(weights);
+            taken[chosen] = true;
+            picks[rank] = chosen;
+        }
+        return picks;
+    }
+
+    private int pick(double[] weights) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double target = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            target -= weights[i];
+            if (target < 0 && weights[i] > 0) {
+                return i;
+            }
+        }
+        // Rounding left a sliver at the end; take the last candidate with weight
+        for (int i = weights.length - 1; i >= 0; i--) {
+            if (weights[i] > 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No weights to pick from");
+    }
+
+    // Evenly spaced slots with a random offset inside each, so timestamps only increase
+    private long nextTimestamp() {
+        double slot = (double) spreadMillis / ballotsToSpread;
+        long at = startMillis + (long) ((ballotCount + random.nextDouble()) * slot);
+        ballotCount++;
+        return at;
+    }
+
+    private static double seconds(long startNanos) {
+        return Math.max((System.nanoTime() - startNanos) / 1e9, 1e-9);
+    }
+}
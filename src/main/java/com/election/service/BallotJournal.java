@@ -0,0 +1,530 @@
+package com.election.service;
+
+import com.election.model.Ballot;
+import com.election.model.Candidate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of committed ballot events, kept next to the
+ * database so its contents can be rebuilt if the database file is lost or
+ * corrupted.
+ *
+ * The file starts with a magic number and format version. Each record is
+ * {@code [int length][byte type][payload][int crc32]}, the checksum covering
+ * type and payload. A save carries the session id, timestamp and ranked
+ * candidates; a delete carries the session id and the candidates it removed,
+ * so replay never needs to look anything up. Candidates are stored by list,
+ * name and index rather than database id. Counts, selection orders and
+ * indexes are unsigned bytes and shorts; appends that do not fit fail rather
+ * than being truncated.
+ *
+ * Replay maps the file into memory in large windows and walks it
+ * sequentially, stopping at the first torn or corrupt record. On open, only
+ * a torn last record is cut off; a file that is damaged before its end is
+ * moved aside whole and a new journal is started.
+ */
+public class BallotJournal {
+    private static final int MAGIC = 0x454a4e4c; // "EJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    private static final long MAP_WINDOW = 256L * 1024 * 1024;
+    private static final int REBUILD_BATCH = 10_000;
+    private static final MetricsRegistry.Counter ERRORS = MetricsRegistry.getInstance().counter("journal.errors");
+
+    // Largest ballot, selection order and candidate index a record can hold
+    public static final int MAX_SELECTIONS = 0xff;
+    public static final int MAX_CANDIDATE_INDEX = 0xffff;
+
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+    private static final byte CLEAR = 3;
+
+    /** Receives journal records in the order they were written. */
+    public interface Listener {
+        void save(Ballot ballot) throws SQLException;
+
+        void delete(String sessionId, List<Candidate> removed) throws SQLException;
+
+        void clear() throws SQLException;
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final boolean sync;
+
+    private BallotJournal(File file, FileChannel channel, boolean sync) {
+        this.file = file;
+        this.channel = channel;
+        this.sync = sync;
+    }
+
+    /**
+     * Opens the journal for appending, creating it if needed. A record torn by
+     * a crash mid-write is cut off so new records follow the last good one.
+     * If a bad record is followed by more data the file is not touched: it is
+     * renamed to {@code <name>.corrupt-<millis>} and a new, empty journal is
+     * opened in its place. With {@code sync} every append is forced to disk
+     * before returning.
+     */
+    public static BallotJournal open(File file, boolean sync) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, HEADER_SIZE - header.remaining());
+                }
+                channel.force(true);
+            }
+
+            ScanResult scanned = scan(channel, null);
+            long validEnd = scanned.validEnd;
+            if (validEnd < channel.size()) {
+                if (!scanned.tornTail) {
+                    channel.close();
+                    return openAside(file, validEnd, sync);
+                }
+                String message = "Ballot journal " + file + ": discarding " + (channel.size() - validEnd) +
+                        " bytes of a record torn at the end of the file";
+                System.err.println(message);
+                LoggingService.getInstance().log(message);
+                channel.truncate(validEnd);
+            }
+            channel.position(validEnd);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return new BallotJournal(file, channel, sync);
+    }
+
+    // Keeps a journal damaged before its end for inspection and starts a new one
+    private static BallotJournal openAside(File file, long corruptAt, boolean sync) throws IOException {
+        File aside = new File(file.getPath() + ".corrupt-" + System.currentTimeMillis());
+        Files.move(file.toPath(), aside.toPath());
+        ERRORS.increment();
+        String message = "Ballot journal " + file + " is corrupt at byte " + corruptAt +
+                " with records after it; moved to " + aside + " and started a new journal";
+        System.err.println(message);
+        LoggingService.getInstance().log(message);
+        return open(file, sync);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // True when the journal holds no records yet
+    public synchronized boolean isEmpty() throws IOException {
+        return channel.size() <= HEADER_SIZE;
+    }
+
+    public synchronized void appendSaves(List<Ballot> ballots) throws IOException {
+        RecordBuffer buffer = new RecordBuffer();
+        for (Ballot ballot : ballots) {
+            buffer.begin(SAVE);
+            buffer.putString(ballot.getSessionId());
+            buffer.putString(ballot.getTimestamp());
+            buffer.putCandidates(ballot.getCandidates());
+            buffer.end();
+        }
+        write(buffer);
+    }
+
+    public synchronized void appendDelete(String sessionId, List<Candidate> removed) throws IOException {
+        RecordBuffer buffer = new RecordBuffer();
+        buffer.begin(DELETE);
+        buffer.putString(sessionId);
+        buffer.putCandidates(removed);
+        buffer.end();
+        write(buffer);
+    }
+
+    public synchronized void appendClear() throws IOException {
+        RecordBuffer buffer = new RecordBuffer();
+        buffer.begin(CLEAR);
+        buffer.end();
+        write(buffer);
+    }
+
+    private void write(RecordBuffer buffer) throws IOException {
+        ByteBuffer bytes = buffer.toByteBuffer();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            if (channel.isOpen()) {
+                channel.force(true);
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing ballot journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replays every intact record to the listener. The returned map holds the
+     * record counts per type, bytes read, elapsed time, throughput, and
+     * "corruptAt", the offset of the first bad record or -1 if the whole file
+     * was intact.
+     */
+    public static Map<String, Object> replay(File file, Listener listener) throws IOException, SQLException {
+        long start = System.nanoTime();
+        ScanResult result;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            try {
+                result = scan(channel, listener);
+            } catch (ListenerException e) {
+                throw e.getCause();
+            }
+            result.corruptAt = result.validEnd < channel.size() ? result.validEnd : -1;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        double seconds = Math.max(elapsedNanos / 1e9, 1e-9);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("records", result.saves + result.deletes + result.clears);
+        summary.put("saves", result.saves);
+        summary.put("deletes", result.deletes);
+        summary.put("clears", result.clears);
+        summary.put("bytes", result.validEnd);
+        summary.put("corruptAt", result.corruptAt);
+        summary.put("elapsedMs", elapsedNanos / 1_000_000);
+        summary.put("recordsPerSecond", (result.saves + result.deletes + result.clears) / seconds);
+        summary.put("megabytesPerSecond", result.validEnd / seconds / (1024 * 1024));
+        return summary;
+    }
+
+    /**
+     * Selection counts per "list: name", the same keys as
+     * DatabaseService.getCandidateStats, computed from the journal alone.
+     */
+    public static Map<String, Long> replayTallies(File file, Map<String, Object> summary)
+            throws IOException, SQLException {
+        Map<String, Long> tallies = new HashMap<>();
+        summary.putAll(replay(file, new Listener() {
+            @Override
+            public void save(Ballot ballot) {
+                for (Candidate candidate : ballot.getCandidates()) {
+                    tallies.merge(candidate.getList() + ": " + candidate.getName(), 1L, Long::sum);
+                }
+            }
+
+            @Override
+            public void delete(String sessionId, List<Candidate> removed) {
+                for (Candidate candidate : removed) {
+                    tallies.merge(candidate.getList() + ": " + candidate.getName(), -1L, Long::sum);
+                }
+            }
+
+            @Override
+            public void clear() {
+                tallies.replaceAll((key, count) -> 0L);
+            }
+        }));
+        return tallies;
+    }
+
+    /**
+     * Replays the journal into {@code target}, which should be a new, empty
+     * database. Saves are committed in large batches through the normal save
+     * path, so counts, fingerprints and the target's own journal come out
+     * exactly as if the ballots had been cast there.
+     */
+    public static Map<String, Object> rebuild(File file, DatabaseService target) throws IOException, SQLException {
+        List<Ballot> pending = new ArrayList<>(REBUILD_BATCH);
+        Map<String, Object> summary = replay(file, new Listener() {
+            @Override
+            public void save(Ballot ballot) throws SQLException {
+                pending.add(ballot);
+                if (pending.size() >= REBUILD_BATCH) {
+                    flush();
+                }
+            }
+
+            @Override
+            public void delete(String sessionId, List<Candidate> removed) throws SQLException {
+                flush();
+                target.deleteSession(sessionId);
+            }
+
+            @Override
+            public void clear() throws SQLException {
+                flush();
+                target.clearAllSelections();
+            }
+
+            private void flush() throws SQLException {
+                if (!pending.isEmpty()) {
+                    target.persist(pending);
+                    pending.clear();
+                }
+            }
+        });
+        if (!pending.isEmpty()) {
+            target.persist(pending);
+        }
+        target.continueSessionIds();
+        return summary;
+    }
+
+    private static class ScanResult {
+        long validEnd = HEADER_SIZE;
+        long corruptAt = -1;
+        // The first bad record runs to the end of the file, as a crash mid-append leaves it
+        boolean tornTail;
+        long saves;
+        long deletes;
+        long clears;
+    }
+
+    // Carries a listener's SQLException out of the scan loop
+    private static class ListenerException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ListenerException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    // Walks the records through memory-mapped windows; a null listener only validates
+    private static ScanResult scan(FileChannel channel, Listener listener) throws IOException {
+        ScanResult result = new ScanResult();
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            throw new IOException("Ballot journal is missing its header");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a ballot journal");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported ballot journal version " + version);
+        }
+
+        CRC32 crc = new CRC32();
+        MappedByteBuffer window = null;
+        long windowStart = 0;
+        long position = HEADER_SIZE;
+
+        while (position < size) {
+            // Remap whenever the next record might cross the end of a window that stops short of the file end
+            long windowEnd = window == null ? 0 : windowStart + window.capacity();
+            if (window == null || (position + MAX_RECORD_SIZE + 9 > windowEnd && windowEnd < size)) {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position));
+                windowStart = position;
+            }
+            int offset = (int) (position - windowStart);
+            int available = window.capacity() - offset;
+            // Windows that stop short of the file end always hold a whole record, so
+            // running out of window here means running out of file
+            if (available < 9) {
+                result.tornTail = true;
+                break;
+            }
+
+            int length = window.getInt(offset);
+            if (length < 0 || length > MAX_RECORD_SIZE) {
+                break;
+            }
+            if (available < length + 9) {
+                result.tornTail = true;
+                break;
+            }
+            ByteBuffer body = window.duplicate();
+            body.position(offset + 4).limit(offset + 5 + length);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != window.getInt(offset + 5 + length)) {
+                // A bad record that ends exactly at the file end is the last append, torn
+                result.tornTail = position + length + 9 == size;
+                break;
+            }
+
+            byte type = window.get(offset + 4);
+            RecordReader reader = new RecordReader(window, offset + 5);
+            switch (type) {
+                case SAVE:
+                    result.saves++;
+                    if (listener != null) {
+                        String sessionId = reader.string();
+                        String timestamp = reader.string();
+                        deliver(() -> listener.save(new Ballot(sessionId, timestamp, reader.candidates())));
+                    }
+                    break;
+                case DELETE:
+                    result.deletes++;
+                    if (listener != null) {
+                        String sessionId = reader.string();
+                        deliver(() -> listener.delete(sessionId, reader.candidates()));
+                    }
+                    break;
+                case CLEAR:
+                    result.clears++;
+                    if (listener != null) {
+                        deliver(listener::clear);
+                    }
+                    break;
+                default:
+                    // Unknown type with a valid checksum: written by a newer version
+                    throw new IOException("Unknown ballot journal record type " + type + " at " + position);
+            }
+
+            position += length + 9;
+            result.validEnd = position;
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface Delivery {
+        void run() throws SQLException;
+    }
+
+    private static void deliver(Delivery delivery) {
+        try {
+            delivery.run();
+        } catch (SQLException e) {
+            throw new ListenerException(e);
+        }
+    }
+
+    // Builds one or more records in memory so each append is a single write
+    private static class RecordBuffer {
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+        private int recordStart;
+
+        void begin(byte type) {
+            ensure(5);
+            recordStart = buffer.position();
+            buffer.putInt(0);
+            buffer.put(type);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            checkRange("string length", bytes.length, 0xffff);
+            ensure(2 + bytes.length);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+
+        void putCandidates(List<Candidate> candidates) throws IOException {
+            checkRange("candidate count", candidates.size(), MAX_SELECTIONS);
+            ensure(1);
+            buffer.put((byte) candidates.size());
+            for (Candidate candidate : candidates) {
+                checkRange("candidate index", candidate.getIndex(), MAX_CANDIDATE_INDEX);
+                checkRange("selection order", candidate.getSelectionOrder(), MAX_SELECTIONS);
+                putString(candidate.getName());
+                putString(candidate.getList());
+                ensure(3);
+                buffer.putShort((short) candidate.getIndex());
+                buffer.put((byte) candidate.getSelectionOrder());
+            }
+        }
+
+        // Nothing has been written yet, so a failed record leaves the file untouched
+        private static void checkRange(String field, int value, int max) throws IOException {
+            if (value < 0 || value > max) {
+                throw new IOException(field + " " + value + " does not fit a journal record, the limit is " + max);
+            }
+        }
+
+        void end() throws IOException {
+            int length = buffer.position() - recordStart - 5;
+            checkRange("record size", length, MAX_RECORD_SIZE);
+            buffer.putInt(recordStart, length);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), recordStart + 4, length + 1);
+            ensure(4);
+            buffer.putInt((int) crc.getValue());
+        }
+
+        ByteBuffer toByteBuffer() {
+            ByteBuffer bytes = buffer.duplicate();
+            bytes.flip();
+            return bytes;
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+    }
+
+    private static class RecordReader {
+        private final ByteBuffer buffer;
+        private int offset;
+
+        RecordReader(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        String string() {
+            int length = buffer.getShort(offset) & 0xffff;
+            byte[] bytes = new byte[length];
+            buffer.get(offset + 2, bytes);
+            offset += 2 + length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        List<Candidate> candidates() {
+            int count = buffer.get(offset++) & 0xff;
+            List<Candidate> candidates = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = string();
+                String list = string();
+                int index = buffer.getShort(offset) & 0xffff;
+                int order = buffer.get(offset + 2) & 0xff;
+                offset += 3;
+                Candidate candidate = new Candidate(name, list, index);
+                candidate.setSelectionOrder(order);
+                candidates.add(candidate);
+            }
+            return candidates;
+        }
+    }
+}
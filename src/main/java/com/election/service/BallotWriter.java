@@ -0,0 +1,167 @@
+package com.election.service;
+
+import com.election.model.Ballot;
+import com.election.model.Candidate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue for ballot saves. Callers get a future immediately and a
+ * dedicated writer thread commits queued ballots in groups, one transaction
+ * per group.
+ *
+ * A future completes only after the transaction holding its ballot has
+ * committed, so an acknowledged ballot survives an application crash. Ballots
+ * that are still queued when the process dies are lost; they were never
+ * acknowledged.
+ */
+public class BallotWriter {
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final int MAX_GROUP_SIZE = 64;
+    // From submit until the ballot's transaction has committed
+    private static final MetricsRegistry.Timer SAVE_LATENCY = MetricsRegistry.getInstance().timer("ballotWriter.saveLatency");
+    private static final MetricsRegistry.Counter REJECTED = MetricsRegistry.getInstance().counter("ballotWriter.rejected");
+
+    private static class PendingBallot {
+        final Ballot ballot;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        final long queuedNanos = System.nanoTime();
+
+        PendingBallot(Ballot ballot) {
+            this.ballot = ballot;
+        }
+    }
+
+    private final DatabaseService databaseService;
+    private final BlockingQueue<PendingBallot> queue;
+    private final Thread writerThread;
+    private volatile boolean accepting = true;
+
+    public BallotWriter(DatabaseService databaseService) {
+        this(databaseService, DEFAULT_CAPACITY);
+    }
+
+    public BallotWriter(DatabaseService databaseService, int capacity) {
+        this.databaseService = databaseService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        MetricsRegistry.getInstance().gauge("ballotWriter.queue.depth", queue::size);
+        this.writerThread = new Thread(this::run, "ballot-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues a ballot for saving and returns a future that completes with its
+     * session id once it is committed. Never blocks: when the queue is full
+     * the future fails right away with a {@link RejectedExecutionException}.
+     */
+    public CompletableFuture<String> submit(List<Candidate> selectedCandidates) {
+        // Copy the candidates, the UI keeps mutating its own instances
+        List<Candidate> snapshot = new ArrayList<>(selectedCandidates.size());
+        for (Candidate candidate : selectedCandidates) {
+            Candidate copy = new Candidate(candidate.getName(), candidate.getList(), candidate.getIndex());
+            copy.setSelectionOrder(candidate.getSelectionOrder());
+            snapshot.add(copy);
+        }
+
+        PendingBallot pending = new PendingBallot(databaseService.newBallot(snapshot));
+        if (!accepting) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Ballot writer is shut down"));
+            return pending.future;
+        }
+
+        // Called from the FX thread, so a full queue is reported rather than waited out
+        if (!queue.offer(pending)) {
+            REJECTED.increment();
+            pending.future.completeExceptionally(
+                    new RejectedExecutionException("Save queue is full, please try again"));
+        }
+        return pending.future;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<PendingBallot> group = new ArrayList<>(MAX_GROUP_SIZE);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                PendingBallot first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, MAX_GROUP_SIZE - 1);
+                commit(group);
+            } catch (InterruptedException e) {
+                // Treat an interrupt as a shutdown request and drain what is left
+                accepting = false;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingBallot> group) {
+        List<Ballot> ballots = new ArrayList<>(group.size());
+        for (PendingBallot pending : group) {
+            ballots.add(pending.ballot);
+        }
+
+        try {
+            List<String> sessionIds = databaseService.persist(ballots);
+            for (int i = 0; i < group.size(); i++) {
+                SAVE_LATENCY.stop(group.get(i).queuedNanos);
+                group.get(i).future.complete(sessionIds.get(i));
+            }
+        } catch (SQLException e) {
+            if (group.size() == 1) {
+                System.err.println("Error saving selection: " + e.getMessage());
+                e.printStackTrace();
+                group.get(0).future.completeExceptionally(e);
+                return;
+            }
+
+            // Retry one by one so a single bad ballot does not fail the whole group
+            for (PendingBallot pending : group) {
+                commit(Collections.singletonList(pending));
+            }
+        }
+    }
+
+    /**
+     * Stops accepting ballots and waits for the queued ones to be committed.
+     * Returns false if the queue could not be drained within the timeout.
+     */
+    public boolean shutdown(long timeoutMillis) {
+        accepting = false;
+        try {
+            writerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (writerThread.isAlive()) {
+            System.err.println("Ballot writer did not drain within " + timeoutMillis + " ms, " +
+                    queue.size() + " ballots still queued");
+            return false;
+        }
+
+        // A submit racing with shutdown can land after the writer exited
+        List<PendingBallot> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        for (PendingBallot pending : leftover) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Ballot writer is shut down"));
+        }
+        return leftover.isEmpty();
+    }
+}
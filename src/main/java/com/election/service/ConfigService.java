@@ -1,58 +1,277 @@
 package com.election.service;
 
 import com.election.model.Candidate;
+import com.election.model.CandidateRoster;
 
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
+import javax.json.JsonValue;
 
+/**
+ * Candidate lists from config/names.json.
+ *
+ * The file is parsed once into an immutable CandidateRoster that every caller
+ * shares. Once watching is started, edits to the file are picked up in the
+ * background and the new roster is swapped in whole; a file that does not
+ * parse leaves the current roster in place. The roster version goes up by one
+ * with every change, so caches built from it only need to compare a number.
+ */
 public class ConfigService {
     private static final String CONFIG_FILE = "config/names.json";
+    private static final String MAX_SELECTIONS_KEY = "maxSelections";
+    // Editors often write a file in several steps; wait for them to finish
+    private static final long RELOAD_SETTLE_MS = 200;
+    private static final MetricsRegistry.Timer LOAD_TIMER = MetricsRegistry.getInstance().timer("config.load");
+    private static final MetricsRegistry.Counter ERRORS = MetricsRegistry.getInstance().counter("config.errors");
     
     private static ConfigService instance;
     
-    private ConfigService() {}
+    private final Path configFile = Paths.get(CONFIG_FILE);
+    private final List<Consumer<CandidateRoster>> listeners = new CopyOnWriteArrayList<>();
+    private volatile CandidateRoster roster;
+    // Why the file could not be read, while only the built-in fallback is loaded
+    private volatile String loadError;
+    private WatchService watchService;
+    private Thread watcherThread;
     
-    public static ConfigService getInstance() {
+    private ConfigService() {
+        MetricsRegistry.getInstance().gauge("config.version", this::getVersion);
+        if (!reload()) {
+            roster = fallbackRoster();
+        }
+    }
+    
+    public static synchronized ConfigService getInstance() {
         if (instance == null) {
             instance = new ConfigService();
         }
         return instance;
     }
     
+    public CandidateRoster getRoster() {
+        return roster;
+    }
+    
+    public long getVersion() {
+        CandidateRoster current = roster;
+        return current != null ? current.getVersion() : 0;
+    }
+    
+    // Called with the new roster after every successful change, on the thread that loaded it
+    public void addChangeListener(Consumer<CandidateRoster> listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeChangeListener(Consumer<CandidateRoster> listener) {
+        listeners.remove(listener);
+    }
+    
     public List<Candidate> loadCandidatesFromList(String listName) {
-        List<Candidate> candidates = new ArrayList<>();
+        return roster.getCandidates(listName);
+    }
+    
+    // Loads every candidate list in the config file, keyed by list name in file order
+    public Map<String, List<Candidate>> loadAllLists() throws IOException {
+        return loadRoster().getAllCandidates();
+    }
+    
+    // The current roster, failing instead of handing out the built-in fallback
+    public CandidateRoster loadRoster() throws IOException {
+        if (loadError != null) {
+            throw new IOException(loadError);
+        }
+        return roster;
+    }
+    
+    /**
+     * Reads the config file again and swaps in the new roster if it parsed
+     * and differs from the current one. Returns false, keeping the current
+     * roster, if the file could not be read or parsed.
+     */
+    public synchronized boolean reload() {
+        long start = System.nanoTime();
+        CandidateRoster parsed;
+        try {
+            parsed = parse(configFile);
+        } catch (IOException | RuntimeException e) {
+            ERRORS.increment();
+            System.err.println("Error loading configuration: " + e.getMessage());
+            e.printStackTrace();
+            if (roster == null || loadError != null) {
+                loadError = "Cannot load " + configFile + ": " + e.getMessage();
+            } else {
+                LoggingService.getInstance().logError("configuration reload, keeping version " + roster.getVersion(), e);
+            }
+            return false;
+        }
+        LOAD_TIMER.stop(start);
         
-        try (JsonReader reader = Json.createReader(new FileReader(CONFIG_FILE))) {
+        CandidateRoster current = roster;
+        if (current != null && loadError == null && current.hasSameContent(parsed)) {
+            return true;
+        }
+        
+        CandidateRoster updated = parsed.withVersion(getVersion() + 1, System.currentTimeMillis());
+        roster = updated;
+        loadError = null;
+        if (current != null) {
+            LoggingService.getInstance().log(String.format("Configuration reloaded: version %d, %d lists, %d candidates",
+                    updated.getVersion(), updated.getListNames().size(), updated.size()));
+        }
+        for (Consumer<CandidateRoster> listener : listeners) {
+            listener.accept(updated);
+        }
+        return true;
+    }
+    
+    // Every array in the file is a list; an optional "maxSelections" number sets the ballot limit.
+    // Limits and list lengths must fit the ballot journal's records.
+    private static CandidateRoster parse(Path file) throws IOException {
+        Map<String, List<String>> lists = new LinkedHashMap<>();
+        int maxSelections = CandidateRoster.DEFAULT_MAX_SELECTIONS;
+        
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             JsonReader reader = Json.createReader(in)) {
             JsonObject config = reader.readObject();
-            JsonArray names = config.getJsonArray(listName);
-            
-            for (int i = 0; i < names.size(); i++) {
-                String name = names.getString(i);
-                candidates.add(new Candidate(name, listName, i));
+            if (config.containsKey(MAX_SELECTIONS_KEY)) {
+                maxSelections = config.getInt(MAX_SELECTIONS_KEY);
+                if (maxSelections < 1 || maxSelections > BallotJournal.MAX_SELECTIONS) {
+                    throw new IOException(MAX_SELECTIONS_KEY + " must be between 1 and " +
+                            BallotJournal.MAX_SELECTIONS + ", was " + maxSelections);
+                }
             }
             
+            for (Map.Entry<String, JsonValue> entry : config.entrySet()) {
+                if (entry.getValue().getValueType() != JsonValue.ValueType.ARRAY) {
+                    continue;
+                }
+                
+                JsonArray names = (JsonArray) entry.getValue();
+                if (names.size() > BallotJournal.MAX_CANDIDATE_INDEX + 1) {
+                    throw new IOException("List " + entry.getKey() + " has " + names.size() +
+                            " candidates, at most " + (BallotJournal.MAX_CANDIDATE_INDEX + 1) + " are allowed");
+                }
+                List<String> listNames = new ArrayList<>(names.size());
+                for (int i = 0; i < names.size(); i++) {
+                    listNames.add(names.getString(i));
+                }
+                lists.put(entry.getKey(), listNames);
+            }
+        }
+        
+        if (lists.isEmpty()) {
+            throw new IOException("No candidate lists in " + file);
+        }
+        return new CandidateRoster(0, System.currentTimeMillis(), lists, maxSelections);
+    }
+    
+    // Fallback to default values if config file can't be loaded
+    private static CandidateRoster fallbackRoster() {
+        Map<String, List<String>> lists = new LinkedHashMap<>();
+        List<String> listA = new ArrayList<>();
+        List<String> listB = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            listA.add("Candidate A" + (i + 1));
+            listB.add("Candidate B" + (i + 1));
+        }
+        lists.put("listA", listA);
+        lists.put("listB", listB);
+        return new CandidateRoster(0, System.currentTimeMillis(), lists);
+    }
+    
+    /**
+     * Starts reloading the roster in the background whenever the config file
+     * changes. Does nothing if already watching.
+     */
+    public synchronized void startWatching() {
+        if (watchService != null) {
+            return;
+        }
+        Path directory = configFile.toAbsolutePath().getParent();
+        try {
+            Files.createDirectories(directory);
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
         } catch (IOException e) {
-            System.err.println("Error loading configuration: " + e.getMessage());
+            ERRORS.increment();
+            System.err.println("Error watching configuration: " + e.getMessage());
             e.printStackTrace();
-            
-            // Fallback to default values if config file can't be loaded
-            if (listName.equals("listA")) {
-                for (int i = 0; i < 9; i++) {
-                    candidates.add(new Candidate("Candidate A" + (i+1), listName, i));
+            watchService = null;
+            return;
+        }
+        
+        WatchService service = watchService;
+        watcherThread = new Thread(() -> watch(service), "config-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+    
+    public synchronized void stopWatching() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Error closing configuration watcher: " + e.getMessage());
+        }
+        watchService = null;
+        watcherThread = null;
+    }
+    
+    private void watch(WatchService service) {
+        Path fileName = configFile.getFileName();
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = touchesConfig(key, fileName);
+                key.reset();
+                if (!changed) {
+                    continue;
                 }
-            } else if (listName.equals("listB")) {
-                for (int i = 0; i < 9; i++) {
-                    candidates.add(new Candidate("Candidate B" + (i+1), listName, i));
+                
+                // Fold the burst of events from one save into a single reload
+                WatchKey more;
+                while ((more = service.poll(RELOAD_SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    more.pollEvents();
+                    more.reset();
                 }
+                reload();
             }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watching stopped
         }
-        
-        return candidates;
     }
-} 
\ No newline at end of file
+    
+    private static boolean touchesConfig(WatchKey key, Path fileName) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
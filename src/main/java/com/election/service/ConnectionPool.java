@@ -0,0 +1,272 @@
+package com.election.service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Long-lived SQLite connections for {@link DatabaseService}.
+ *
+ * There is exactly one writer connection, serialized by a lock, and a small
+ * set of reader connections. The database runs in WAL mode so readers see the
+ * last committed state and never wait on an in-flight write transaction.
+ */
+class ConnectionPool {
+    private static final int DEFAULT_READERS = 3;
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+
+    @FunctionalInterface
+    interface SqlWork<T> {
+        T run(PooledConnection conn) throws SQLException;
+    }
+
+    private final String url;
+    private final PooledConnection writer;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final BlockingQueue<PooledConnection> readers;
+    private final List<PooledConnection> allReaders = new ArrayList<>();
+    // The reader a readTransaction() running on this thread holds
+    private final ThreadLocal<PooledConnection> transactionReader = new ThreadLocal<>();
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+
+    ConnectionPool(String url) throws SQLException {
+        this(url, DEFAULT_READERS);
+    }
+
+    ConnectionPool(String url, int readerCount) throws SQLException {
+        this.url = url;
+        this.writer = open();
+        this.readers = new ArrayBlockingQueue<>(readerCount);
+        for (int i = 0; i < readerCount; i++) {
+            PooledConnection reader = open();
+            allReaders.add(reader);
+            readers.add(reader);
+        }
+
+        // Make sure the WAL is checkpointed and file handles are released on exit
+        shutdownHook = new Thread(this::close, "db-pool-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            // WAL lets readers run concurrently with the single writer
+            stmt.execute("PRAGMA journal_mode = WAL");
+            // NORMAL is durable across application crashes in WAL mode; only an
+            // OS crash or power loss can roll back the last few commits
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            // Negative value is in KiB, so this is an 8 MiB page cache
+            stmt.execute("PRAGMA cache_size = -8192");
+            stmt.execute("PRAGMA temp_store = MEMORY");
+            stmt.execute("PRAGMA busy_timeout = 5000");
+        }
+        return new PooledConnection(conn);
+    }
+
+    /**
+     * Runs the work on the writer connection inside a transaction. The
+     * transaction is committed when the work returns normally and rolled back
+     * when it throws.
+     */
+    <T> T write(SqlWork<T> work) throws SQLException {
+        return write(work, null);
+    }
+
+    /**
+     * Like {@link #write(SqlWork)}, then runs {@code afterCommit} with the
+     * result once the transaction has committed. It still holds the write
+     * lock, so in-memory state updated there changes in commit order.
+     */
+    <T> T write(SqlWork<T> work, Consumer<T> afterCommit) throws SQLException {
+        ensureOpen();
+        writeLock.lock();
+        try {
+            Connection conn = writer.getConnection();
+            T result;
+            conn.setAutoCommit(false);
+            try {
+                result = work.run(writer);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+            if (afterCommit != null) {
+                try {
+                    afterCommit.accept(result);
+                } catch (RuntimeException e) {
+                    // The data is committed, so this must not be reported as a failed write
+                    System.err.println("Error after database commit: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+            return result;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Runs the work on one of the reader connections. Readers only ever see
+     * committed data and are not blocked by a concurrent write.
+     */
+    <T> T read(SqlWork<T> work) throws SQLException {
+        ensureOpen();
+        PooledConnection current = transactionReader.get();
+        if (current != null) {
+            return work.run(current);
+        }
+        PooledConnection reader;
+        try {
+            reader = readers.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        if (reader == null) {
+            throw new SQLException("Timed out waiting for a database connection");
+        }
+
+        try {
+            return work.run(reader);
+        } finally {
+            readers.offer(reader);
+        }
+    }
+
+    /**
+     * Runs the work in one read transaction on a reader connection. Reads made
+     * on this thread until it returns join the transaction, so they all see the
+     * database as of the same commit however many writes commit meanwhile.
+     */
+    <T> T readTransaction(SqlWork<T> work) throws SQLException {
+        if (transactionReader.get() != null) {
+            return work.run(transactionReader.get());
+        }
+        return read(reader -> {
+            Connection conn = reader.getConnection();
+            conn.setAutoCommit(false);
+            transactionReader.set(reader);
+            try {
+                return work.run(reader);
+            } finally {
+                transactionReader.remove();
+                // Nothing was written, this only ends the transaction
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        });
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        // Wait for an in-flight save to finish before closing the writer
+        writeLock.lock();
+        try {
+            try (Statement stmt = writer.getConnection().createStatement()) {
+                stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+            } catch (SQLException e) {
+                System.err.println("Error checkpointing database: " + e.getMessage());
+            }
+            writer.close();
+        } finally {
+            writeLock.unlock();
+        }
+
+        for (PooledConnection reader : allReaders) {
+            reader.close();
+        }
+
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down, the hook is the caller
+        }
+    }
+
+    /**
+     * A connection together with its cache of prepared statements. Statements
+     * are keyed by their SQL text and stay open for the life of the connection.
+     */
+    static class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        Connection getConnection() {
+            return connection;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement pstmt = statements.get(sql);
+            if (pstmt == null) {
+                pstmt = connection.prepareStatement(sql);
+                statements.put(sql, pstmt);
+            } else {
+                // A batch left by a rolled-back write must not run with the next one
+                pstmt.clearParameters();
+                pstmt.clearBatch();
+            }
+            return pstmt;
+        }
+
+        PreparedStatement prepareWithKeys(String sql) throws SQLException {
+            String key = "keys:" + sql;
+            PreparedStatement pstmt = statements.get(key);
+            if (pstmt == null) {
+                pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                statements.put(key, pstmt);
+            } else {
+                // A batch left by a rolled-back write must not run with the next one
+                pstmt.clearParameters();
+                pstmt.clearBatch();
+            }
+            return pstmt;
+        }
+
+        void close() {
+            for (PreparedStatement pstmt : statements.values()) {
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    // Ignore, the connection is being closed anyway
+                }
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing database connection: " + e.getMessage());
+            }
+        }
+    }
+}
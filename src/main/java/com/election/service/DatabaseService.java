@@ -1,41 +1,366 @@
 package com.election.service;
 
+import com.election.model.Ballot;
 import com.election.model.Candidate;
+import com.election.model.SessionPage;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.*;
 import java.util.*;
-import java.text.SimpleDateFormat;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
 
 public class DatabaseService {
     private static final String DB_PATH = "db/election.db";
-    private static final String DB_URL = "jdbc:sqlite:" + DB_PATH;
     private static final String SELECTIONS_TABLE = "selections";
     private static final String CANDIDATES_TABLE = "candidates";
+    private static final String BALLOTS_TABLE = "ballots";
+    private static final String DATA_VERSION_TABLE = "data_version";
+    
+    private static final MetricsRegistry.Timer PERSIST_TIMER = MetricsRegistry.getInstance().timer("db.persist");
+    private static final MetricsRegistry.Histogram PERSIST_BATCH = MetricsRegistry.getInstance().histogram("db.persist.batchSize");
+    private static final MetricsRegistry.Counter BALLOTS_SAVED = MetricsRegistry.getInstance().counter("db.ballots.saved");
+    private static final MetricsRegistry.Timer SESSIONS_TIMER = MetricsRegistry.getInstance().timer("db.query.sessions");
+    private static final MetricsRegistry.Timer SESSION_CANDIDATES_TIMER = MetricsRegistry.getInstance().timer("db.query.sessionCandidates");
+    private static final MetricsRegistry.Timer PATTERNS_TIMER = MetricsRegistry.getInstance().timer("db.query.patterns");
+    private static final MetricsRegistry.Timer PATTERN_SESSIONS_TIMER = MetricsRegistry.getInstance().timer("db.query.patternSessions");
+    private static final MetricsRegistry.Timer DELETE_TIMER = MetricsRegistry.getInstance().timer("db.delete");
+    private static final MetricsRegistry.Timer CLEAR_TIMER = MetricsRegistry.getInstance().timer("db.clear");
+    private static final MetricsRegistry.Counter ERRORS = MetricsRegistry.getInstance().counter("db.errors");
     
     private static DatabaseService instance;
     
-    private DatabaseService() {
+    private ConnectionPool pool;
+    
+    // (list, name, index) -> candidates.id, only holds committed rows
+    private final Map<String, Integer> candidateIds = new ConcurrentHashMap<>();
+    private final AtomicLong lastSessionId = new AtomicLong();
+    private final TallyEngine tallies = new TallyEngine();
+    // Bumped after every committed change to the saved ballots; the data_version
+    // row is bumped with the change itself, so it is briefly one ahead
+    private final AtomicLong dataVersion = new AtomicLong();
+    private final List<DataListener> dataListeners = new CopyOnWriteArrayList<>();
+    // Binary record of committed saves, deletes and clears, for rebuilding the database
+    private BallotJournal journal;
+    
+    /**
+     * Told about every committed change to the saved ballots, right after the
+     * commit and on the thread that made it, so changes arrive in commit order.
+     * The writer waits for listeners; hand any real work to another thread.
+     *
+     * Each event carries the data version the change produced. A result read
+     * with readVersioned() at that version or later already includes it.
+     */
+    public interface DataListener {
+        // Each session as listed by getSavedSessionsPage without its display name,
+        // plus its "fingerprint" and its "candidates" in selection order
+        default void sessionsSaved(long version, List<Map<String, Object>> sessions) { }
+        
+        // The deleted session's "id" and "fingerprint", and the "candidates" that lost a selection
+        default void sessionDeleted(long version, Map<String, Object> session) { }
+        
+        default void selectionsCleared(long version) { }
+        
+        // Some stored counts were corrected; counts has every candidate's count
+        // as of this version, keyed like getCandidateStats()
+        default void countsReconciled(long version, Map<String, Integer> counts) { }
+    }
+    
+    // A query result and the data version it shows exactly
+    public static final class VersionedResult<T> {
+        private final T value;
+        private final long dataVersion;
+        
+        VersionedResult(T value, long dataVersion) {
+            this.value = value;
+            this.dataVersion = dataVersion;
+        }
+        
+        public T getValue() {
+            return value;
+        }
+        
+        public long getDataVersion() {
+            return dataVersion;
+        }
+    }
+    
+    @FunctionalInterface
+    private interface JournalAppend {
+        void append(BallotJournal journal) throws IOException;
+    }
+    
+    private DatabaseService(String dbPath) {
+        // Create the db directory if it doesn't exist
+        File dbDir = new File(dbPath).getAbsoluteFile().getParentFile();
+        if (!dbDir.exists()) {
+            dbDir.mkdirs();
+        }
+        
+        try {
+            pool = new ConnectionPool("jdbc:sqlite:" + dbPath);
+        } catch (SQLException e) {
+            System.err.println("Error opening database: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
         initializeDatabase();
+        warmCandidateCache();
+        openJournal(journalFileFor(dbPath));
     }
     
-    public static DatabaseService getInstance() {
+    public static synchronized DatabaseService getInstance() {
         if (instance == null) {
-            instance = new DatabaseService();
+            instance = new DatabaseService(DB_PATH);
         }
         return instance;
     }
     
-    private void initializeDatabase() {
-        // Create the db directory if it doesn't exist
-        File dbDir = new File("db");
-        if (!dbDir.exists()) {
-            dbDir.mkdir();
+    // A separate database at the given path, e.g. a temp file for benchmarks.
+    // The caller owns it and should close() it when done.
+    public static DatabaseService open(String dbPath) {
+        return new DatabaseService(dbPath);
+    }
+    
+    // db/election.db is journalled to db/election.journal
+    public static File journalFileFor(String dbPath) {
+        String base = dbPath.endsWith(".db") ? dbPath.substring(0, dbPath.length() - 3) : dbPath;
+        return new File(base + ".journal");
+    }
+    
+    public static File defaultJournalFile() {
+        return journalFileFor(DB_PATH);
+    }
+    
+    public File getJournalFile() {
+        return journal != null ? journal.getFile() : null;
+    }
+    
+    public void addDataListener(DataListener listener) {
+        dataListeners.add(listener);
+    }
+    
+    public void removeDataListener(DataListener listener) {
+        dataListeners.remove(listener);
+    }
+    
+    private void fireDataChange(Consumer<DataListener> event) {
+        for (DataListener listener : dataListeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException e) {
+                System.err.println("Error in data listener: " + e.getMessage());
+                e.printStackTrace();
+            }
         }
+    }
+    
+    /**
+     * A write that changes the saved ballots. The stored data version moves on
+     * in the same transaction, and afterCommit gets the new version.
+     */
+    private <T> T writeChange(ConnectionPool.SqlWork<T> work, ObjLongConsumer<T> afterCommit) throws SQLException {
+        return pool().write(conn -> {
+            T result = work.run(conn);
+            // Writes are serialized, so nothing else moves the version meanwhile
+            PreparedStatement bump = conn.prepare("UPDATE " + DATA_VERSION_TABLE + " SET version = ?");
+            bump.setLong(1, dataVersion.get() + 1);
+            bump.executeUpdate();
+            return result;
+        }, result -> afterCommit.accept(result, dataVersion.incrementAndGet()));
+    }
+    
+    /**
+     * Runs the query and returns its result with the data version it shows.
+     * Its reads on this thread share one read transaction that starts by
+     * reading the stored version, so changes committed while it runs are
+     * neither waited for nor seen. Reads it hands to other threads may see
+     * later changes too. For the in-memory counts use getVersionedCandidateStats().
+     */
+    public <T> VersionedResult<T> readVersioned(Callable<T> query) throws Exception {
+        try {
+            return pool().readTransaction(conn -> {
+                long version;
+                try (ResultSet rs = conn.prepare("SELECT version FROM " + DATA_VERSION_TABLE).executeQuery()) {
+                    version = rs.next() ? rs.getLong(1) : 0;
+                }
+                try {
+                    return new VersionedResult<>(query.call(), version);
+                } catch (SQLException | RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new QueryException(e);
+                }
+            });
+        } catch (QueryException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+    
+    // Carries a versioned query's checked exception out of the read transaction
+    private static class QueryException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
-            
+        QueryException(Exception cause) {
+            super(cause);
+        }
+    }
+    
+    private ConnectionPool pool() throws SQLException {
+        if (pool == null) {
+            throw new SQLException("Database is not available");
+        }
+        return pool;
+    }
+    
+    // Closes the pooled connections; also runs from a JVM shutdown hook
+    public void close() {
+        if (pool != null) {
+            pool.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+    
+    // Opens the journal; a new journal for an existing database starts with its current ballots
+    private void openJournal(File file) {
+        boolean sync = Boolean.parseBoolean(System.getProperty("election.journal.sync", "true"));
+        try {
+            BallotJournal opened = BallotJournal.open(file, sync);
+            if (opened.isEmpty() && pool != null) {
+                long start = System.nanoTime();
+                List<Ballot> chunk = new ArrayList<>();
+                int[] count = { 0 };
+                streamBallots(null, null, null, ballot -> {
+                    chunk.add(ballot);
+                    count[0]++;
+                    if (chunk.size() >= 10_000) {
+                        appendBaseline(opened, chunk);
+                    }
+                });
+                appendBaseline(opened, chunk);
+                if (count[0] > 0) {
+                    String message = String.format("Ballot journal %s started with %d existing sessions in %d ms",
+                            file, count[0], (System.nanoTime() - start) / 1_000_000);
+                    System.out.println(message);
+                    LoggingService.getInstance().log(message);
+                }
+            }
+            journal = opened;
+        } catch (IOException | SQLException | UncheckedIOException e) {
+            System.err.println("Error opening ballot journal: " + e.getMessage());
+            e.printStackTrace();
+            LoggingService.getInstance().logError("ballot journal", e);
+        }
+    }
+    
+    private static void appendBaseline(BallotJournal journal, List<Ballot> chunk) {
+        try {
+            journal.appendSaves(chunk);
+            chunk.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Journal failures are reported but never undo a committed transaction
+    private void journal(JournalAppend append) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            append.append(journal);
+        } catch (IOException e) {
+            System.err.println("Error writing ballot journal: " + e.getMessage());
+            e.printStackTrace();
+            LoggingService.getInstance().logError("ballot journal", e);
+        }
+    }
+    
+    // Schema changes are only ever appended here, never edited once released
+    private void initializeDatabase() {
+        SchemaMigrator migrator = new SchemaMigrator()
+                .add(1, "create candidates and selections tables", this::createBaseTables)
+                .add(2, "create ballots table with fingerprints", this::createBallotsTable)
+                .add(3, "add lookup indexes", this::createIndexes)
+                .add(4, "create data version table", this::createDataVersionTable);
+        
+        try {
+            migrator.migrate(pool());
+        } catch (SQLException e) {
+            ERRORS.increment();
+            System.err.println("Error initializing database: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private void warmCandidateCache() {
+        try {
+            pool().read(conn -> {
+                Map<Integer, Candidate> candidates = new HashMap<>();
+                Map<Integer, Long> counts = new HashMap<>();
+                
+                PreparedStatement pstmt = conn.prepare(
+                        "SELECT id, name, list, index_num, selection_count FROM " + CANDIDATES_TABLE);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt("id");
+                        Candidate candidate = new Candidate(rs.getString("name"), rs.getString("list"),
+                                rs.getInt("index_num"));
+                        candidateIds.put(candidateKey(candidate.getList(), candidate.getName(),
+                                candidate.getIndex()), id);
+                        candidates.put(id, candidate);
+                        counts.put(id, rs.getLong("selection_count"));
+                    }
+                }
+                try (ResultSet rs = conn.prepare("SELECT version FROM " + DATA_VERSION_TABLE).executeQuery()) {
+                    dataVersion.set(rs.next() ? rs.getLong(1) : 0);
+                }
+                tallies.seed(candidates, counts, dataVersion.get());
+                return null;
+            });
+            continueSessionIds();
+        } catch (SQLException e) {
+            ERRORS.increment();
+            System.err.println("Error loading candidate cache and tallies: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    // Continue the session id sequence from what is already stored
+    void continueSessionIds() throws SQLException {
+        pool().read(conn -> {
+            PreparedStatement maxSession = conn.prepare(
+                    "SELECT MAX(CAST(session_id AS INTEGER)) FROM " + BALLOTS_TABLE);
+            try (ResultSet rs = maxSession.executeQuery()) {
+                if (rs.next()) {
+                    long stored = rs.getLong(1);
+                    lastSessionId.updateAndGet(last -> Math.max(last, stored));
+                }
+            }
+            return null;
+        });
+    }
+    
+    private static String candidateKey(String list, String name, int index) {
+        return list + '\u0000' + name + '\u0000' + index;
+    }
+    
+    // Session ids are millisecond based but must stay unique when many ballots are saved at once
+    private String nextSessionId(long atMillis) {
+        return String.valueOf(lastSessionId.updateAndGet(last -> Math.max(atMillis, last + 1)));
+    }
+    
+    private void createBaseTables(ConnectionPool.PooledConnection conn) throws SQLException {
+        // IF NOT EXISTS because databases created before versioning already have these
+        try (Statement stmt = conn.getConnection().createStatement()) {
             // Create candidates table
             stmt.execute("CREATE TABLE IF NOT EXISTS " + CANDIDATES_TABLE + " (" +
                     "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -44,7 +369,7 @@ public class DatabaseService {
                     "index_num INTEGER NOT NULL, " +
                     "selection_count INTEGER DEFAULT 0, " +
                     "UNIQUE(name, list) ON CONFLICT REPLACE)");
-            
+        
             // Create selections table
             stmt.execute("CREATE TABLE IF NOT EXISTS " + SELECTIONS_TABLE + " (" +
                     "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -53,179 +378,448 @@ public class DatabaseService {
                     "timestamp TEXT NOT NULL, " +
                     "session_id TEXT NOT NULL, " +
                     "FOREIGN KEY (candidate_id) REFERENCES " + CANDIDATES_TABLE + "(id))");
-            
-        } catch (SQLException e) {
-            System.err.println("Error initializing database: " + e.getMessage());
-            e.printStackTrace();
         }
     }
     
-    public void saveSelection(List<Candidate> selectedCandidates) {
-        String sessionId = String.valueOf(System.currentTimeMillis());
-        String timestamp = new Timestamp(System.currentTimeMillis()).toString();
+    private void createBallotsTable(ConnectionPool.PooledConnection conn) throws SQLException {
+        // One row per saved session with the fingerprint of its ordered selections
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + BALLOTS_TABLE + " (" +
+                    "session_id TEXT PRIMARY KEY, " +
+                    "timestamp TEXT NOT NULL, " +
+                    "candidate_count INTEGER NOT NULL, " +
+                    "fingerprint INTEGER NOT NULL)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_ballots_fingerprint ON " + 
+                    BALLOTS_TABLE + " (fingerprint)");
+        }
+        backfillBallots(conn);
+    }
+    
+    private void createDataVersionTable(ConnectionPool.PooledConnection conn) throws SQLException {
+        // One row, moved on in the same transaction as every change to the saved ballots
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + DATA_VERSION_TABLE + " (version INTEGER NOT NULL)");
+            stmt.execute("INSERT INTO " + DATA_VERSION_TABLE + " (version) VALUES (0)");
+        }
+    }
+    
+    private void createIndexes(ConnectionPool.PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            // Session lookups in deleteSession and getSessionCandidates
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_selections_session ON " + 
+                    SELECTIONS_TABLE + " (session_id, selection_order)");
+            // Per-candidate counting when reconciling selection counts
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_selections_candidate ON " + 
+                    SELECTIONS_TABLE + " (candidate_id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_selections_timestamp ON " + 
+                    SELECTIONS_TABLE + " (timestamp)");
+            // Newest-first keyset paging of saved sessions
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_ballots_timestamp ON " + 
+                    BALLOTS_TABLE + " (timestamp, session_id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_ballots_fingerprint_timestamp ON " + 
+                    BALLOTS_TABLE + " (fingerprint, timestamp, session_id)");
+            stmt.execute("DROP INDEX IF EXISTS idx_ballots_fingerprint");
+            stmt.execute("ANALYZE");
+        }
+    }
+    
+    // Computes fingerprints for sessions saved before the ballots table existed
+    private void backfillBallots(ConnectionPool.PooledConnection conn) throws SQLException {
+        PreparedStatement select = conn.prepare(
+                "SELECT session_id, timestamp, candidate_id, selection_order FROM " + SELECTIONS_TABLE + 
+                " WHERE session_id NOT IN (SELECT session_id FROM " + BALLOTS_TABLE + ")" +
+                " ORDER BY session_id, selection_order");
+        PreparedStatement insert = conn.prepare(
+                "INSERT INTO " + BALLOTS_TABLE + 
+                " (session_id, timestamp, candidate_count, fingerprint) VALUES (?, ?, ?, ?)");
         
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            conn.setAutoCommit(false);
-            
-            try {
-                // Save each selected candidate
-                for (Candidate candidate : selectedCandidates) {
-                    // Get or create candidate id
-                    int candidateId = getOrCreateCandidate(conn, candidate);
-                    
-                    // Insert selection
-                    try (PreparedStatement pstmt = conn.prepareStatement(
-                            "INSERT INTO " + SELECTIONS_TABLE + 
-                            " (candidate_id, selection_order, timestamp, session_id) VALUES (?, ?, ?, ?)")) {
-                        pstmt.setInt(1, candidateId);
-                        pstmt.setInt(2, candidate.getSelectionOrder());
-                        pstmt.setString(3, timestamp);
-                        pstmt.setString(4, sessionId);
-                        pstmt.executeUpdate();
-                    }
-                    
-                    // Update selection count
-                    try (PreparedStatement pstmt = conn.prepareStatement(
-                            "UPDATE " + CANDIDATES_TABLE + 
-                            " SET selection_count = selection_count + 1 WHERE id = ?")) {
-                        pstmt.setInt(1, candidateId);
-                        pstmt.executeUpdate();
+        String currentSession = null;
+        String currentTimestamp = null;
+        BallotFingerprint fingerprint = null;
+        int count = 0;
+        
+        try (ResultSet rs = select.executeQuery()) {
+            while (rs.next()) {
+                String sessionId = rs.getString("session_id");
+                if (!sessionId.equals(currentSession)) {
+                    if (currentSession != null) {
+                        addBallotRow(insert, currentSession, currentTimestamp, count, fingerprint.value());
                     }
+                    currentSession = sessionId;
+                    currentTimestamp = rs.getString("timestamp");
+                    fingerprint = new BallotFingerprint();
+                    count = 0;
                 }
-                
-                conn.commit();
-            } catch (SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
+                fingerprint.add(rs.getInt("candidate_id"), rs.getInt("selection_order"));
+                count++;
             }
+        }
+        if (currentSession != null) {
+            addBallotRow(insert, currentSession, currentTimestamp, count, fingerprint.value());
+        }
+        insert.executeBatch();
+    }
+    
+    private static void addBallotRow(PreparedStatement insert, String sessionId, String timestamp,
+                                     int candidateCount, long fingerprint) throws SQLException {
+        insert.setString(1, sessionId);
+        insert.setString(2, timestamp);
+        insert.setInt(3, candidateCount);
+        insert.setLong(4, fingerprint);
+        insert.addBatch();
+    }
+    
+    public void saveSelection(List<Candidate> selectedCandidates) {
+        try {
+            persist(Collections.singletonList(newBallot(selectedCandidates)));
         } catch (SQLException e) {
             System.err.println("Error saving selection: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
-    private int getOrCreateCandidate(Connection conn, Candidate candidate) throws SQLException {
-        // Check if candidate exists
-        try (PreparedStatement pstmt = conn.prepareStatement(
-                "SELECT id FROM " + CANDIDATES_TABLE + 
-                " WHERE name = ? AND list = ? AND index_num = ?")) {
-            pstmt.setString(1, candidate.getName());
-            pstmt.setString(2, candidate.getList());
-            pstmt.setInt(3, candidate.getIndex());
+    // Saves many ballots in a single transaction, each one as its own session
+    public boolean saveSelections(List<List<Candidate>> ballots) {
+        List<Ballot> pending = new ArrayList<>(ballots.size());
+        for (List<Candidate> selectedCandidates : ballots) {
+            pending.add(newBallot(selectedCandidates));
+        }
+        
+        try {
+            persist(pending);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error saving selections: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    // Assigns the session id and timestamp a ballot will be stored under; the
+    // timestamp follows the id, so ballots saved in the same millisecond stay in order
+    Ballot newBallot(List<Candidate> selectedCandidates) {
+        String sessionId = nextSessionId(System.currentTimeMillis());
+        String timestamp = new Timestamp(Long.parseLong(sessionId)).toString();
+        return new Ballot(sessionId, timestamp, selectedCandidates);
+    }
+    
+    // For a ballot cast at the given time, which is kept as its timestamp; only
+    // the id moves past the newest saved session, since ids must keep increasing
+    Ballot newBallot(List<Candidate> selectedCandidates, long atMillis) {
+        String sessionId = nextSessionId(atMillis);
+        return new Ballot(sessionId, new Timestamp(atMillis).toString(), selectedCandidates);
+    }
+    
+    // What one persist transaction changes, applied to the in-memory caches once it commits
+    private static class PendingWrite {
+        final Map<String, Integer> createdKeys = new HashMap<>();
+        final Map<Integer, Candidate> createdCandidates = new HashMap<>();
+        final Map<String, Integer> replacedKeys = new HashMap<>();
+        final Map<Integer, Integer> countDeltas = new HashMap<>();
+        final List<String> sessionIds = new ArrayList<>();
+        final List<Long> fingerprints = new ArrayList<>();
+    }
+    
+    /**
+     * Writes the ballots in one transaction: candidate ids come from the cache,
+     * selection rows go in as one JDBC batch and the counts are updated with one
+     * aggregated statement per candidate.
+     */
+    List<String> persist(List<Ballot> ballots) throws SQLException {
+        long start = System.nanoTime();
+        PendingWrite written;
+        try {
+            written = persistBatch(ballots);
+        } catch (SQLException e) {
+            ERRORS.increment();
+            throw e;
+        }
+        PERSIST_TIMER.stop(start);
+        PERSIST_BATCH.record(ballots.size());
+        BALLOTS_SAVED.add(ballots.size());
+        return written.sessionIds;
+    }
+    
+    private PendingWrite persistBatch(List<Ballot> ballots) throws SQLException {
+        return writeChange(conn -> {
+            PendingWrite pending = new PendingWrite();
+            PreparedStatement insert = conn.prepare(
+                    "INSERT INTO " + SELECTIONS_TABLE + 
+                    " (candidate_id, selection_order, timestamp, session_id) VALUES (?, ?, ?, ?)");
+            PreparedStatement insertBallot = conn.prepare(
+                    "INSERT INTO " + BALLOTS_TABLE + 
+                    " (session_id, timestamp, candidate_count, fingerprint) VALUES (?, ?, ?, ?)");
             
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("id");
+            for (Ballot ballot : ballots) {
+                List<Candidate> ordered = new ArrayList<>(ballot.getCandidates());
+                ordered.sort(Comparator.comparingInt(Candidate::getSelectionOrder));
+                BallotFingerprint fingerprint = new BallotFingerprint();
+                
+                for (Candidate candidate : ordered) {
+                    int candidateId = getOrCreateCandidate(conn, candidate, pending);
+                    fingerprint.add(candidateId, candidate.getSelectionOrder());
+                    
+                    insert.setInt(1, candidateId);
+                    insert.setInt(2, candidate.getSelectionOrder());
+                    insert.setString(3, ballot.getTimestamp());
+                    insert.setString(4, ballot.getSessionId());
+                    insert.addBatch();
+                    
+                    pending.countDeltas.merge(candidateId, 1, Integer::sum);
+                }
+                addBallotRow(insertBallot, ballot.getSessionId(), ballot.getTimestamp(),
+                        ordered.size(), fingerprint.value());
+                pending.sessionIds.add(ballot.getSessionId());
+                pending.fingerprints.add(fingerprint.value());
+            }
+            insert.executeBatch();
+            insertBallot.executeBatch();
+            
+            PreparedStatement update = conn.prepare(
+                    "UPDATE " + CANDIDATES_TABLE + 
+                    " SET selection_count = selection_count + ? WHERE id = ?");
+            for (Map.Entry<Integer, Integer> delta : pending.countDeltas.entrySet()) {
+                update.setInt(1, delta.getValue());
+                update.setInt(2, delta.getKey());
+                update.addBatch();
+            }
+            update.executeBatch();
+            
+            return pending;
+        }, (pending, version) -> {
+            // Candidate ids only enter the cache once the rows behind them are committed
+            candidateIds.keySet().removeAll(pending.replacedKeys.keySet());
+            candidateIds.putAll(pending.createdKeys);
+            tallies.apply(pending.createdCandidates, pending.replacedKeys.values(), pending.countDeltas, version);
+            if (!dataListeners.isEmpty()) {
+                List<Map<String, Object>> saved = savedSessions(ballots, pending.fingerprints);
+                fireDataChange(listener -> listener.sessionsSaved(version, saved));
             }
+            journal(j -> j.appendSaves(ballots));
+        });
+    }
+    
+    private static List<Map<String, Object>> savedSessions(List<Ballot> ballots, List<Long> fingerprints) {
+        List<Map<String, Object>> sessions = new ArrayList<>(ballots.size());
+        for (int i = 0; i < ballots.size(); i++) {
+            Ballot ballot = ballots.get(i);
+            List<Candidate> ordered = new ArrayList<>(ballot.getCandidates());
+            ordered.sort(Comparator.comparingInt(Candidate::getSelectionOrder));
+            
+            Map<String, Object> session = new HashMap<>();
+            session.put("id", ballot.getSessionId());
+            session.put("timestamp", ballot.getTimestamp());
+            session.put("formattedTime", formatTimestamp(ballot.getTimestamp()));
+            session.put("candidateCount", ordered.size());
+            session.put("fingerprint", fingerprints.get(i));
+            session.put("candidates", ordered);
+            sessions.add(session);
+        }
+        return sessions;
+    }
+    
+    private int getOrCreateCandidate(ConnectionPool.PooledConnection conn, Candidate candidate,
+                                     PendingWrite pending) throws SQLException {
+        String key = candidateKey(candidate.getList(), candidate.getName(), candidate.getIndex());
+        Integer cached = candidateIds.get(key);
+        if (cached == null) {
+            cached = pending.createdKeys.get(key);
+        }
+        if (cached != null) {
+            return cached;
         }
         
         // Insert new candidate
-        try (PreparedStatement pstmt = conn.prepareStatement(
+        PreparedStatement insert = conn.prepareWithKeys(
                 "INSERT INTO " + CANDIDATES_TABLE + 
-                " (name, list, index_num, selection_count) VALUES (?, ?, ?, 0)", 
-                Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, candidate.getName());
-            pstmt.setString(2, candidate.getList());
-            pstmt.setInt(3, candidate.getIndex());
-            pstmt.executeUpdate();
-            
-            ResultSet rs = pstmt.getGeneratedKeys();
+                " (name, list, index_num, selection_count) VALUES (?, ?, ?, 0)");
+        insert.setString(1, candidate.getName());
+        insert.setString(2, candidate.getList());
+        insert.setInt(3, candidate.getIndex());
+        insert.executeUpdate();
+        
+        try (ResultSet rs = insert.getGeneratedKeys()) {
             if (rs.next()) {
-                return rs.getInt(1);
+                int id = rs.getInt(1);
+                
+                // UNIQUE(name, list) ON CONFLICT REPLACE drops a row stored under another index
+                String prefix = candidate.getList() + '\u0000' + candidate.getName() + '\u0000';
+                for (Map.Entry<String, Integer> entry : candidateIds.entrySet()) {
+                    if (entry.getKey().startsWith(prefix)) {
+                        pending.replacedKeys.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                pending.createdKeys.entrySet().removeIf(entry -> {
+                    boolean replaced = entry.getKey().startsWith(prefix);
+                    if (replaced) {
+                        pending.createdCandidates.remove(entry.getValue());
+                    }
+                    return replaced;
+                });
+                
+                pending.createdKeys.put(key, id);
+                pending.createdCandidates.put(id, candidate);
+                return id;
             }
         }
         
         throw new SQLException("Failed to get or create candidate");
     }
     
+    // Served from the in-memory tallies, which follow every committed change
     public Map<String, Integer> getCandidateStats() {
-        Map<String, Integer> stats = new HashMap<>();
+        return tallies.snapshot().toStatsMap();
+    }
+    
+    // The same, with the data version the counts show
+    public VersionedResult<Map<String, Integer>> getVersionedCandidateStats() {
+        TallyEngine.Snapshot snapshot = tallies.snapshot();
+        return new VersionedResult<>(snapshot.toStatsMap(), snapshot.getVersion());
+    }
+    
+    public TallyEngine getTallies() {
+        return tallies;
+    }
+    
+    // Changes whenever saved ballots are added, deleted or recounted, so results read
+    // at the same version are still current
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+    
+    // New method to get all saved sessions
+    public List<Map<String, Object>> getSavedSessions() {
+        List<Map<String, Object>> sessions = new ArrayList<>();
+        long start = System.nanoTime();
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(
-                     "SELECT name, list, selection_count FROM " + CANDIDATES_TABLE + 
-                     " ORDER BY selection_count DESC")) {
-            
-            while (rs.next()) {
-                String name = rs.getString("name");
-                String list = rs.getString("list");
-                int count = rs.getInt("selection_count");
-                stats.put(list + ": " + name, count);
-            }
-            
+        try {
+            pool().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(
+                        "SELECT session_id, timestamp, candidate_count AS count FROM " + BALLOTS_TABLE + 
+                        " ORDER BY timestamp DESC, session_id DESC");
+                readSessions(pstmt, 1, sessions);
+                return null;
+            });
+            SESSIONS_TIMER.stop(start);
         } catch (SQLException e) {
-            System.err.println("Error getting candidate stats: " + e.getMessage());
+            ERRORS.increment();
+            System.err.println("Error getting saved sessions: " + e.getMessage());
             e.printStackTrace();
         }
         
-        return stats;
+        return sessions;
     }
     
-    // New method to get all saved sessions
-    public List<Map<String, Object>> getSavedSessions() {
+    /**
+     * Returns the page of saved sessions following {@code after}, or the first
+     * page when {@code after} is null. Pages are keyed on (timestamp, session id)
+     * rather than an offset, so later pages cost the same as the first one.
+     */
+    public SessionPage getSavedSessionsPage(SessionPage after, int pageSize) {
+        Map<String, Object> cursor = after == null ? null : after.getLastSession();
+        int firstNumber = after == null ? 1 : after.getNextNumber();
         List<Map<String, Object>> sessions = new ArrayList<>();
+        long start = System.nanoTime();
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "SELECT DISTINCT session_id, timestamp FROM " + SELECTIONS_TABLE + 
-                     " ORDER BY timestamp DESC")) {
-            
-            ResultSet rs = pstmt.executeQuery();
+        try {
+            int totalCount = pool().read(conn -> {
+                PreparedStatement pstmt;
+                if (cursor == null) {
+                    pstmt = conn.prepare(
+                            "SELECT session_id, timestamp, candidate_count AS count FROM " + BALLOTS_TABLE + 
+                            " ORDER BY timestamp DESC, session_id DESC LIMIT ?");
+                    pstmt.setInt(1, pageSize + 1);
+                } else {
+                    pstmt = conn.prepare(
+                            "SELECT session_id, timestamp, candidate_count AS count FROM " + BALLOTS_TABLE + 
+                            " WHERE timestamp < ? OR (timestamp = ? AND session_id < ?)" +
+                            " ORDER BY timestamp DESC, session_id DESC LIMIT ?");
+                    pstmt.setString(1, (String) cursor.get("timestamp"));
+                    pstmt.setString(2, (String) cursor.get("timestamp"));
+                    pstmt.setString(3, (String) cursor.get("id"));
+                    pstmt.setInt(4, pageSize + 1);
+                }
+                readSessions(pstmt, firstNumber, sessions);
+                
+                // The total only needs counting once, later pages carry it forward
+                if (after != null) {
+                    return after.getTotalCount();
+                }
+                PreparedStatement countStmt = conn.prepare(
+                        "SELECT COUNT(*) FROM " + BALLOTS_TABLE);
+                try (ResultSet rs = countStmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
             
-            int sessionCount = 1;
-            SimpleDateFormat displayFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            SESSIONS_TIMER.stop(start);
             
+            // One extra row was fetched to find out whether another page exists
+            boolean hasMore = sessions.size() > pageSize;
+            if (hasMore) {
+                sessions.remove(sessions.size() - 1);
+            }
+            return new SessionPage(sessions, totalCount, firstNumber, hasMore);
+        } catch (SQLException e) {
+            ERRORS.increment();
+            System.err.println("Error getting saved sessions: " + e.getMessage());
+            e.printStackTrace();
+            return new SessionPage(sessions, sessions.size(), firstNumber, false);
+        }
+    }
+    
+    private void readSessions(PreparedStatement pstmt, int firstNumber, List<Map<String, Object>> sessions)
+            throws SQLException {
+        int sessionCount = firstNumber;
+        
+        try (ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
-                String sessionId = rs.getString("session_id");
                 String timestamp = rs.getString("timestamp");
                 
                 Map<String, Object> session = new HashMap<>();
-                session.put("id", sessionId);
+                session.put("id", rs.getString("session_id"));
                 session.put("timestamp", timestamp);
                 session.put("name", "Generated List #" + sessionCount++);
-                
-                Timestamp ts = Timestamp.valueOf(timestamp);
-                session.put("formattedTime", displayFormat.format(ts));
-                
-                // Get the count of candidates in this session
-                try (PreparedStatement countStmt = conn.prepareStatement(
-                        "SELECT COUNT(*) as count FROM " + SELECTIONS_TABLE + 
-                        " WHERE session_id = ?")) {
-                    countStmt.setString(1, sessionId);
-                    ResultSet countRs = countStmt.executeQuery();
-                    if (countRs.next()) {
-                        session.put("candidateCount", countRs.getInt("count"));
-                    }
-                }
+                session.put("formattedTime", formatTimestamp(timestamp));
+                session.put("candidateCount", rs.getInt("count"));
                 
                 sessions.add(session);
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error getting saved sessions: " + e.getMessage());
-            e.printStackTrace();
         }
-        
-        return sessions;
+    }
+    
+    // Stored timestamps are "yyyy-MM-dd HH:mm:ss.fff", so display formatting is a prefix
+    private static String formatTimestamp(String timestamp) {
+        return timestamp.length() > 19 ? timestamp.substring(0, 19) : timestamp;
     }
     
     // New method to get candidates in a specific session
     public List<Map<String, Object>> getSessionCandidates(String sessionId) {
+        long start = System.nanoTime();
+        try {
+            List<Map<String, Object>> candidates = pool().read(conn -> getSessionCandidates(conn, sessionId));
+            SESSION_CANDIDATES_TIMER.stop(start);
+            return candidates;
+        } catch (SQLException e) {
+            ERRORS.increment();
+            System.err.println("Error getting session candidates: " + e.getMessage());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+    
+    private List<Map<String, Object>> getSessionCandidates(ConnectionPool.PooledConnection conn, String sessionId)
+            throws SQLException {
         List<Map<String, Object>> candidates = new ArrayList<>();
         
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "SELECT c.name, c.list, s.selection_order FROM " + 
-                     SELECTIONS_TABLE + " s JOIN " + CANDIDATES_TABLE + " c " +
-                     "ON s.candidate_id = c.id WHERE s.session_id = ? " +
-                     "ORDER BY s.selection_order")) {
-            
-            pstmt.setString(1, sessionId);
-            ResultSet rs = pstmt.executeQuery();
-            
+        PreparedStatement pstmt = conn.prepare(
+                "SELECT c.name, c.list, s.selection_order FROM " + 
+                SELECTIONS_TABLE + " s JOIN " + CANDIDATES_TABLE + " c " +
+                "ON s.candidate_id = c.id WHERE s.session_id = ? " +
+                "ORDER BY s.selection_order");
+        pstmt.setString(1, sessionId);
+        
+        try (ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
                 Map<String, Object> candidate = new HashMap<>();
                 candidate.put("name", rs.getString("name"));
@@ -234,10 +828,6 @@ public class DatabaseService {
                 
                 candidates.add(candidate);
             }
-            
-        } catch (SQLException e) {
-            System.err.println("Error getting session candidates: " + e.getMessage());
-            e.printStackTrace();
         }
         
         return candidates;
@@ -245,107 +835,234 @@ public class DatabaseService {
     
     // New method to get identical selection batches
     public List<Map<String, Object>> getIdenticalSelectionBatches() {
+        return getIdenticalSelectionBatches(Integer.MAX_VALUE);
+    }
+    
+    // Returns the most frequent selection patterns, most common first
+    public List<Map<String, Object>> getIdenticalSelectionBatches(int limit) {
         List<Map<String, Object>> batches = new ArrayList<>();
-        Map<String, List<String>> sessionFingerprints = new HashMap<>();
-        Map<String, Integer> fingerprintCounts = new HashMap<>();
-        Map<String, String> fingerprintToSessionId = new HashMap<>();
+        long start = System.nanoTime();
         
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            // First, get all session IDs
-            List<String> sessionIds = new ArrayList<>();
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery("SELECT DISTINCT session_id FROM " + SELECTIONS_TABLE)) {
-                while (rs.next()) {
-                    sessionIds.add(rs.getString("session_id"));
-                }
-            }
-            
-            // For each session, create a fingerprint
-            for (String sessionId : sessionIds) {
-                List<Map<String, Object>> candidates = getSessionCandidates(sessionId);
-                StringBuilder fingerprint = new StringBuilder();
+        try {
+            pool().read(conn -> {
+                PreparedStatement pstmt = conn.prepare(
+                        "SELECT fingerprint, COUNT(*) AS count, MIN(session_id) AS sample_session FROM " + 
+                        BALLOTS_TABLE + " GROUP BY fingerprint ORDER BY count DESC, fingerprint LIMIT ?");
+                pstmt.setInt(1, limit);
                 
-                for (Map<String, Object> candidate : candidates) {
-                    String name = (String) candidate.get("name");
-                    String list = (String) candidate.get("list");
-                    int order = (int) candidate.get("order");
-                    
-                    fingerprint.append(name).append("|").append(list).append("|").append(order).append(",");
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    int batchNumber = 1;
+                    while (rs.next()) {
+                        Map<String, Object> batch = new HashMap<>();
+                        batch.put("id", "batch_" + batchNumber++);
+                        batch.put("fingerprint", rs.getLong("fingerprint"));
+                        batch.put("count", rs.getInt("count"));
+                        batch.put("sampleSessionId", rs.getString("sample_session"));
+                        batches.add(batch);
+                    }
                 }
                 
-                String fingerprintStr = fingerprint.toString();
-                
-                // Add to maps
-                if (!sessionFingerprints.containsKey(fingerprintStr)) {
-                    sessionFingerprints.put(fingerprintStr, new ArrayList<>());
+                // Get the candidates for a sample session with each fingerprint
+                for (Map<String, Object> batch : batches) {
+                    List<Map<String, Object>> candidates = 
+                            getSessionCandidates(conn, (String) batch.get("sampleSessionId"));
+                    batch.put("candidates", candidates);
+                    batch.put("name", "Selection Pattern: " + describePattern(candidates));
                 }
-                sessionFingerprints.get(fingerprintStr).add(sessionId);
-                
-                fingerprintCounts.put(fingerprintStr, sessionFingerprints.get(fingerprintStr).size());
-                fingerprintToSessionId.put(fingerprintStr, sessionId);
-            }
-            
-            // Now create batch objects
-            int batchNumber = 1;
-            for (String fingerprint : fingerprintCounts.keySet()) {
-                int count = fingerprintCounts.get(fingerprint);
-                String sampleSessionId = fingerprintToSessionId.get(fingerprint);
-                
-                // Get the candidates for a sample session with this fingerprint
-                List<Map<String, Object>> candidates = getSessionCandidates(sampleSessionId);
-                
-                Map<String, Object> batch = new HashMap<>();
-                batch.put("id", "batch_" + batchNumber++);
-                batch.put("fingerprint", fingerprint);
-                batch.put("count", count);
-                batch.put("candidates", candidates);
-                
-                // Calculate a descriptive name based on the top selected candidates
-                StringBuilder nameBuilder = new StringBuilder();
-                int candidateCount = 0;
-                for (Map<String, Object> candidate : candidates) {
-                    if (candidateCount < 2) { // Just show first two candidates for the name
-                        if (candidateCount > 0) nameBuilder.append(", ");
-                        nameBuilder.append(candidate.get("name"));
-                        candidateCount++;
-                    } else {
-                        nameBuilder.append("...");
-                        break;
-                    }
+                return null;
+            });
+            PATTERNS_TIMER.stop(start);
+        } catch (SQLException e) {
+            ERRORS.increment();
+            System.err.println("Error getting identical selection batches: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return batches;
+    }
+    
+    // Drill-down into the sessions that share one selection pattern, newest first
+    public SessionPage getPatternSessions(long fingerprint, SessionPage after, int pageSize) {
+        Map<String, Object> cursor = after == null ? null : after.getLastSession();
+        int firstNumber = after == null ? 1 : after.getNextNumber();
+        List<Map<String, Object>> sessions = new ArrayList<>();
+        long start = System.nanoTime();
+        
+        try {
+            int totalCount = pool().read(conn -> {
+                PreparedStatement pstmt;
+                if (cursor == null) {
+                    pstmt = conn.prepare(
+                            "SELECT session_id, timestamp, candidate_count AS count FROM " + BALLOTS_TABLE + 
+                            " WHERE fingerprint = ? ORDER BY timestamp DESC, session_id DESC LIMIT ?");
+                    pstmt.setLong(1, fingerprint);
+                    pstmt.setInt(2, pageSize + 1);
+                } else {
+                    pstmt = conn.prepare(
+                            "SELECT session_id, timestamp, candidate_count AS count FROM " + BALLOTS_TABLE + 
+                            " WHERE fingerprint = ? AND (timestamp < ? OR (timestamp = ? AND session_id < ?))" +
+                            " ORDER BY timestamp DESC, session_id DESC LIMIT ?");
+                    pstmt.setLong(1, fingerprint);
+                    pstmt.setString(2, (String) cursor.get("timestamp"));
+                    pstmt.setString(3, (String) cursor.get("timestamp"));
+                    pstmt.setString(4, (String) cursor.get("id"));
+                    pstmt.setInt(5, pageSize + 1);
                 }
+                readSessions(pstmt, firstNumber, sessions);
                 
-                batch.put("name", "Selection Pattern: " + nameBuilder.toString());
-                batches.add(batch);
-            }
-            
-            // Sort batches by count (descending)
-            batches.sort((b1, b2) -> {
-                Integer count1 = (Integer) b1.get("count");
-                Integer count2 = (Integer) b2.get("count");
-                return count2.compareTo(count1); // Descending order
+                if (after != null) {
+                    return after.getTotalCount();
+                }
+                PreparedStatement countStmt = conn.prepare(
+                        "SELECT COUNT(*) FROM " + BALLOTS_TABLE + " WHERE fingerprint = ?");
+                countStmt.setLong(1, fingerprint);
+                try (ResultSet rs = countStmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
             });
+            PATTERN_SESSIONS_TIMER.stop(start);
             
+            boolean hasMore = sessions.size() > pageSize;
+            if (hasMore) {
+                sessions.remove(sessions.size() - 1);
+            }
+            return new SessionPage(sessions, totalCount, firstNumber, hasMore);
         } catch (SQLException e) {
-            System.err.println("Error getting identical selection batches: " + e.getMessage());
+            ERRORS.increment();
+            System.err.println("Error getting pattern sessions: " + e.getMessage());
             e.printStackTrace();
+            return new SessionPage(sessions, sessions.size(), firstNumber, false);
+        }
+    }
+    
+    @FunctionalInterface
+    interface SelectionRowHandler {
+        void row(String sessionId, int candidateId, int selectionOrder);
+    }
+    
+    /**
+     * Streams every selection row ordered by session and selection order,
+     * without materializing the result set.
+     */
+    void streamSelections(SelectionRowHandler handler) throws SQLException {
+        pool().read(conn -> {
+            PreparedStatement pstmt = conn.prepare(
+                    "SELECT session_id, candidate_id, selection_order FROM " + SELECTIONS_TABLE + 
+                    " ORDER BY session_id, selection_order");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.row(rs.getString(1), rs.getInt(2), rs.getInt(3));
+                }
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Streams the saved ballots with timestamps in [fromTimestamp, toTimestamp),
+     * oldest first, optionally only those matching a pattern fingerprint. Null
+     * bounds are open. Rows are read with a cursor and handed over one ballot
+     * at a time, so any number of sessions can be processed. Returns the
+     * number of ballots streamed.
+     */
+    int streamBallots(String fromTimestamp, String toTimestamp, Long fingerprint, Consumer<Ballot> handler)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT b.session_id, b.timestamp, c.name, c.list, c.index_num, s.selection_order FROM " + 
+                BALLOTS_TABLE + " b JOIN " + SELECTIONS_TABLE + " s ON s.session_id = b.session_id " +
+                "JOIN " + CANDIDATES_TABLE + " c ON c.id = s.candidate_id WHERE 1 = 1");
+        if (fromTimestamp != null) {
+            sql.append(" AND b.timestamp >= ?");
         }
+        if (toTimestamp != null) {
+            sql.append(" AND b.timestamp < ?");
+        }
+        if (fingerprint != null) {
+            sql.append(" AND b.fingerprint = ?");
+        }
+        sql.append(" ORDER BY b.timestamp, b.session_id, s.selection_order");
         
-        return batches;
+        return pool().read(conn -> {
+            PreparedStatement pstmt = conn.prepare(sql.toString());
+            int param = 1;
+            if (fromTimestamp != null) {
+                pstmt.setString(param++, fromTimestamp);
+            }
+            if (toTimestamp != null) {
+                pstmt.setString(param++, toTimestamp);
+            }
+            if (fingerprint != null) {
+                pstmt.setLong(param, fingerprint);
+            }
+            
+            int count = 0;
+            String sessionId = null;
+            String timestamp = null;
+            List<Candidate> candidates = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (!rs.getString(1).equals(sessionId)) {
+                        if (sessionId != null) {
+                            handler.accept(new Ballot(sessionId, timestamp, candidates));
+                            count++;
+                            candidates = new ArrayList<>();
+                        }
+                        sessionId = rs.getString(1);
+                        timestamp = rs.getString(2);
+                    }
+                    Candidate candidate = new Candidate(rs.getString(3), rs.getString(4), rs.getInt(5));
+                    candidate.setSelectionOrder(rs.getInt(6));
+                    candidates.add(candidate);
+                }
+            }
+            if (sessionId != null) {
+                handler.accept(new Ballot(sessionId, timestamp, candidates));
+                count++;
+            }
+            return count;
+        });
+    }
+    
+    // Calculate a descriptive name based on the top selected candidates
+    private String describePattern(List<Map<String, Object>> candidates) {
+        StringBuilder nameBuilder = new StringBuilder();
+        int candidateCount = 0;
+        for (Map<String, Object> candidate : candidates) {
+            if (candidateCount < 2) { // Just show first two candidates for the name
+                if (candidateCount > 0) nameBuilder.append(", ");
+                nameBuilder.append(candidate.get("name"));
+                candidateCount++;
+            } else {
+                nameBuilder.append("...");
+                break;
+            }
+        }
+        return nameBuilder.toString();
     }
     
     // Method to clear all selections
     public boolean clearAllSelections() {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
-            
-            // Delete all selections
-            stmt.executeUpdate("DELETE FROM " + SELECTIONS_TABLE);
-            
-            // Reset selection counts
-            stmt.executeUpdate("UPDATE " + CANDIDATES_TABLE + " SET selection_count = 0");
-            
+        long start = System.nanoTime();
+        try {
+            writeChange(conn -> {
+                try (Statement stmt = conn.getConnection().createStatement()) {
+                    // Delete all selections
+                    stmt.executeUpdate("DELETE FROM " + SELECTIONS_TABLE);
+                    stmt.executeUpdate("DELETE FROM " + BALLOTS_TABLE);
+                    
+                    // Reset selection counts
+                    stmt.executeUpdate("UPDATE " + CANDIDATES_TABLE + " SET selection_count = 0");
+                }
+                return null;
+            }, (ignored, version) -> {
+                tallies.reset(version);
+                fireDataChange(listener -> listener.selectionsCleared(version));
+                journal(BallotJournal::appendClear);
+            });
+            CLEAR_TIMER.stop(start);
             return true;
         } catch (SQLException e) {
+            ERRORS.increment();
             System.err.println("Error clearing selections: " + e.getMessage());
             e.printStackTrace();
             return false;
@@ -354,40 +1071,152 @@ public class DatabaseService {
     
     // Method to delete a specific session
     public boolean deleteSession(String sessionId) {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(
-                     "DELETE FROM " + SELECTIONS_TABLE + " WHERE session_id = ?")) {
-            
-            pstmt.setString(1, sessionId);
-            int rowsAffected = pstmt.executeUpdate();
-            
-            // Update candidate counts
-            updateCandidateCountsAfterDeletion(conn);
+        long start = System.nanoTime();
+        try {
+            Map<Integer, Integer> removedCounts = new HashMap<>();
+            List<Candidate> removedCandidates = new ArrayList<>();
+            long[] fingerprint = { 0 };
+            int rowsAffected = writeChange(conn -> {
+                // Find out which candidates lose a selection before the rows are gone
+                PreparedStatement select = conn.prepare(
+                        "SELECT s.candidate_id, s.selection_order, c.name, c.list, c.index_num FROM " + 
+                        SELECTIONS_TABLE + " s LEFT JOIN " + CANDIDATES_TABLE + " c ON c.id = s.candidate_id " +
+                        "WHERE s.session_id = ? ORDER BY s.selection_order");
+                select.setString(1, sessionId);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        removedCounts.merge(rs.getInt("candidate_id"), 1, Integer::sum);
+                        if (rs.getString("name") != null) {
+                            Candidate removed = new Candidate(rs.getString("name"), rs.getString("list"),
+                                    rs.getInt("index_num"));
+                            removed.setSelectionOrder(rs.getInt("selection_order"));
+                            removedCandidates.add(removed);
+                        }
+                    }
+                }
+                
+                PreparedStatement selectBallot = conn.prepare(
+                        "SELECT fingerprint FROM " + BALLOTS_TABLE + " WHERE session_id = ?");
+                selectBallot.setString(1, sessionId);
+                try (ResultSet rs = selectBallot.executeQuery()) {
+                    if (rs.next()) {
+                        fingerprint[0] = rs.getLong(1);
+                    }
+                }
+                
+                PreparedStatement pstmt = conn.prepare(
+                        "DELETE FROM " + SELECTIONS_TABLE + " WHERE session_id = ?");
+                pstmt.setString(1, sessionId);
+                int rows = pstmt.executeUpdate();
+                
+                PreparedStatement deleteBallot = conn.prepare(
+                        "DELETE FROM " + BALLOTS_TABLE + " WHERE session_id = ?");
+                deleteBallot.setString(1, sessionId);
+                deleteBallot.executeUpdate();
+                
+                // Decrement only the affected candidates, in the same transaction
+                PreparedStatement update = conn.prepare(
+                        "UPDATE " + CANDIDATES_TABLE + 
+                        " SET selection_count = selection_count - ? WHERE id = ?");
+                for (Map.Entry<Integer, Integer> removed : removedCounts.entrySet()) {
+                    update.setInt(1, removed.getValue());
+                    update.setInt(2, removed.getKey());
+                    update.addBatch();
+                }
+                update.executeBatch();
+                
+                return rows;
+            }, (rows, version) -> {
+                Map<Integer, Integer> deltas = new HashMap<>();
+                removedCounts.forEach((id, count) -> deltas.put(id, -count));
+                tallies.apply(Collections.emptyMap(), Collections.emptyList(), deltas, version);
+                if (rows > 0) {
+                    Map<String, Object> deleted = new HashMap<>();
+                    deleted.put("id", sessionId);
+                    deleted.put("fingerprint", fingerprint[0]);
+                    deleted.put("candidates", removedCandidates);
+                    fireDataChange(listener -> listener.sessionDeleted(version, deleted));
+                    journal(j -> j.appendDelete(sessionId, removedCandidates));
+                }
+            });
+            DELETE_TIMER.stop(start);
             
             return rowsAffected > 0;
         } catch (SQLException e) {
+            ERRORS.increment();
             System.err.println("Error deleting session: " + e.getMessage());
             e.printStackTrace();
             return false;
         }
     }
     
-    // Method to recalculate all candidate selection counts
-    private void updateCandidateCountsAfterDeletion(Connection conn) throws SQLException {
-        // First, set all counts to 0
-        try (Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate("UPDATE " + CANDIDATES_TABLE + " SET selection_count = 0");
-        }
+    /**
+     * Recounts every candidate's selection_count from the selections table and
+     * corrects any that drifted. This is a full scan, so it is only run on
+     * request rather than as part of normal saves and deletes.
+     */
+    public Map<String, Object> reconcileCounts() {
+        Map<String, Object> report = new HashMap<>();
+        long start = System.nanoTime();
         
-        // Then recalculate based on remaining selections
-        String query = 
-            "UPDATE " + CANDIDATES_TABLE + " SET selection_count = (" +
-            "   SELECT COUNT(*) FROM " + SELECTIONS_TABLE + 
-            "   WHERE candidate_id = " + CANDIDATES_TABLE + ".id" +
-            ")";
-        
-        try (Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate(query);
+        try {
+            Map<Integer, Integer> actualCounts = new HashMap<>();
+            List<String> drifted = writeChange(conn -> {
+                List<String> corrections = new ArrayList<>();
+                
+                PreparedStatement select = conn.prepare(
+                        "SELECT c.id, c.name, c.list, c.selection_count, COUNT(s.id) AS actual FROM " + 
+                        CANDIDATES_TABLE + " c LEFT JOIN " + SELECTIONS_TABLE + " s ON s.candidate_id = c.id " +
+                        "GROUP BY c.id");
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        int stored = rs.getInt("selection_count");
+                        int actual = rs.getInt("actual");
+                        if (stored != actual) {
+                            actualCounts.put(rs.getInt("id"), actual);
+                            corrections.add(String.format("%s: %s stored %d, actual %d",
+                                    rs.getString("list"), rs.getString("name"), stored, actual));
+                        }
+                    }
+                }
+                
+                PreparedStatement update = conn.prepare(
+                        "UPDATE " + CANDIDATES_TABLE + " SET selection_count = ? WHERE id = ?");
+                for (Map.Entry<Integer, Integer> actual : actualCounts.entrySet()) {
+                    update.setInt(1, actual.getValue());
+                    update.setInt(2, actual.getKey());
+                    update.addBatch();
+                }
+                update.executeBatch();
+                
+                return corrections;
+            }, (corrections, version) -> {
+                tallies.set(actualCounts, version);
+                if (!corrections.isEmpty()) {
+                    // Still under the write lock, so nothing newer is in the tallies yet
+                    Map<String, Integer> counts = tallies.snapshot().toStatsMap();
+                    fireDataChange(listener -> listener.countsReconciled(version, counts));
+                }
+            });
+            
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            report.put("driftedCandidates", drifted.size());
+            report.put("corrections", drifted);
+            report.put("elapsedMs", elapsedMs);
+            
+            LoggingService logger = LoggingService.getInstance();
+            logger.log(String.format("Reconciled selection counts in %d ms, %d candidates drifted",
+                    elapsedMs, drifted.size()));
+            for (String correction : drifted) {
+                logger.log("Count drift corrected: " + correction);
+            }
+        } catch (SQLException e) {
+            ERRORS.increment();
+            System.err.println("Error reconciling counts: " + e.getMessage());
+            e.printStackTrace();
+            report.put("error", e.getMessage());
         }
+        
+        return report;
     }
-} 
\ No newline at end of file
+}
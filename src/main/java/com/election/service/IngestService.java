@@ -0,0 +1,270 @@
+package com.election.service;
+
+import com.election.model.Ballot;
+import com.election.model.Candidate;
+import com.election.model.CandidateRoster;
+import com.election.model.RankedSelection;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+
+/**
+ * Streams transcribed paper ballots from a file into the database.
+ *
+ * Each line is one ballot with its candidates in ranked order. CSV lines hold
+ * one candidate per field; JSONL lines hold either an array of candidates or
+ * an object with a "candidates" array. A candidate is written as
+ * {@code list:name}, as a bare name when it is unique across lists, or in
+ * JSONL as an object with "list" and "name" fields.
+ */
+public class IngestService {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_REJECTIONS = 20;
+    private static final int PROGRESS_INTERVAL = 100_000;
+
+    private final DatabaseService databaseService;
+    private final int maxSelections;
+    private final Map<String, Candidate> byQualifiedName = new HashMap<>();
+    private final Map<String, Candidate> byBareName = new HashMap<>();
+    private final Set<String> ambiguousNames = new HashSet<>();
+
+    public IngestService(DatabaseService databaseService, CandidateRoster roster) {
+        this.databaseService = databaseService;
+        this.maxSelections = roster.getMaxSelections();
+
+        for (List<Candidate> candidates : roster.getAllCandidates().values()) {
+            for (Candidate candidate : candidates) {
+                byQualifiedName.put(candidate.getList() + ":" + candidate.getName(), candidate);
+                if (byBareName.put(candidate.getName(), candidate) != null) {
+                    ambiguousNames.add(candidate.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Ingests the file and prints progress, rejected rows and a summary to
+     * {@code out}. The returned map holds the accepted and rejected ballot
+     * counts, elapsed time and throughput.
+     */
+    public Map<String, Object> ingest(Path input, int batchSize, PrintStream out) throws IOException, SQLException {
+        boolean jsonLines = isJsonLines(input);
+        List<Ballot> batch = new ArrayList<>(batchSize);
+        long accepted = 0;
+        long rejected = 0;
+        long lineNumber = 0;
+        long start = System.nanoTime();
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+
+                List<Candidate> ballot;
+                try {
+                    List<String[]> references = jsonLines ? parseJsonLine(trimmed) : parseCsvLine(trimmed);
+                    ballot = resolve(references);
+                } catch (IllegalArgumentException | JsonException | ClassCastException e) {
+                    rejected++;
+                    if (rejected <= MAX_REPORTED_REJECTIONS) {
+                        out.println("Rejected line " + lineNumber + ": " + e.getMessage());
+                    }
+                    continue;
+                }
+
+                batch.add(databaseService.newBallot(ballot));
+                if (batch.size() >= batchSize) {
+                    accepted += flush(batch);
+                    if (accepted % PROGRESS_INTERVAL < batchSize) {
+                        out.printf("%,d ballots ingested (%,.0f ballots/sec)%n",
+                                accepted, ratePerSecond(accepted, start));
+                    }
+                }
+            }
+        }
+        accepted += flush(batch);
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        if (rejected > MAX_REPORTED_REJECTIONS) {
+            out.println("... " + (rejected - MAX_REPORTED_REJECTIONS) + " more rejected lines not shown");
+        }
+        out.printf("Ingested %,d ballots in %,d ms (%,.0f ballots/sec), rejected %,d lines%n",
+                accepted, elapsedMs, ratePerSecond(accepted, start), rejected);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("accepted", accepted);
+        summary.put("rejected", rejected);
+        summary.put("elapsedMs", elapsedMs);
+        summary.put("ballotsPerSecond", ratePerSecond(accepted, start));
+        return summary;
+    }
+
+    private long flush(List<Ballot> batch) throws SQLException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int size = batch.size();
+        databaseService.persist(batch);
+        batch.clear();
+        return size;
+    }
+
+    private static double ratePerSecond(long count, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? count / seconds : 0;
+    }
+
+    private static boolean isJsonLines(Path input) {
+        String name = input.getFileName().toString().toLowerCase();
+        return name.endsWith(".jsonl") || name.endsWith(".ndjson");
+    }
+
+    // Turns candidate references into ranked candidates, rejecting anything not in the config
+    private List<Candidate> resolve(List<String[]> references) {
+        if (references.isEmpty()) {
+            throw new IllegalArgumentException("ballot has no candidates");
+        }
+        if (references.size() > maxSelections) {
+            throw new IllegalArgumentException("ballot has " + references.size() +
+                    " candidates, at most " + maxSelections + " are allowed");
+        }
+
+        RankedSelection<Candidate> ranked = new RankedSelection<>();
+        for (String[] reference : references) {
+            Candidate known = lookup(reference[0], reference[1]);
+            if (!ranked.add(known)) {
+                throw new IllegalArgumentException(known.getName() + " is selected more than once");
+            }
+        }
+
+        List<Candidate> ballot = new ArrayList<>(ranked.size());
+        ranked.forEachRanked((known, rank) -> {
+            Candidate selected = new Candidate(known.getName(), known.getList(), known.getIndex());
+            selected.setSelectionOrder(rank);
+            ballot.add(selected);
+        });
+        return ballot;
+    }
+
+    private Candidate lookup(String list, String name) {
+        if (list != null) {
+            Candidate candidate = byQualifiedName.get(list + ":" + name);
+            if (candidate == null) {
+                throw new IllegalArgumentException("unknown candidate " + list + ":" + name);
+            }
+            return candidate;
+        }
+
+        if (ambiguousNames.contains(name)) {
+            throw new IllegalArgumentException(name + " appears on several lists, write it as list:name");
+        }
+        Candidate candidate = byBareName.get(name);
+        if (candidate == null) {
+            throw new IllegalArgumentException("unknown candidate " + name);
+        }
+        return candidate;
+    }
+
+    // Splits "list:name" into its parts; a reference without a known list prefix is a bare name
+    private String[] reference(String text) {
+        String value = text.trim();
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("empty candidate field");
+        }
+        int colon = value.indexOf(':');
+        if (colon > 0 && byQualifiedName.containsKey(value)) {
+            return new String[] { value.substring(0, colon), value.substring(colon + 1) };
+        }
+        return new String[] { null, value };
+    }
+
+    private List<String[]> parseCsvLine(String line) {
+        List<String[]> references = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                references.add(reference(field.toString()));
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        references.add(reference(field.toString()));
+        return references;
+    }
+
+    private List<String[]> parseJsonLine(String line) {
+        JsonStructure json;
+        try (JsonReader reader = Json.createReader(new StringReader(line))) {
+            json = reader.read();
+        }
+
+        JsonArray candidates;
+        if (json instanceof JsonArray) {
+            candidates = (JsonArray) json;
+        } else {
+            JsonObject object = (JsonObject) json;
+            if (!object.containsKey("candidates")) {
+                throw new IllegalArgumentException("missing \"candidates\" array");
+            }
+            candidates = object.getJsonArray("candidates");
+        }
+
+        List<String[]> references = new ArrayList<>(candidates.size());
+        for (JsonValue value : candidates) {
+            if (value instanceof JsonString) {
+                references.add(reference(((JsonString) value).getString()));
+            } else if (value instanceof JsonObject) {
+                JsonObject candidate = (JsonObject) value;
+                references.add(new String[] {
+                        candidate.getString("list", null), candidate.getString("name", "")
+                });
+            } else {
+                throw new IllegalArgumentException("unexpected candidate value " + value);
+            }
+        }
+        return references;
+    }
+}
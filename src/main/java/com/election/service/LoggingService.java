@@ -1,30 +1,144 @@
 package com.election.service;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Application log in log.txt, written asynchronously.
+ *
+ * Callers only put an entry on a bounded queue; a single background thread
+ * keeps the file open, formats and writes entries in batches and flushes
+ * after each batch. When the file passes a size limit, or the day changes,
+ * it is renamed and gzipped and a new one is started. Flush, clear and
+ * shutdown requests go through the same queue, in order with the entries, but
+ * have slots of their own and are never dropped.
+ *
+ * Tuned with system properties:
+ * <ul>
+ *   <li>election.log.capacity - queued entries before the overflow policy applies (8192)</li>
+ *   <li>election.log.overflow - DROP_NEWEST, DROP_OLDEST or BLOCK (DROP_NEWEST)</li>
+ *   <li>election.log.maxBytes - size that triggers rotation (10 MB)</li>
+ *   <li>election.log.rotateDaily - also rotate when the date changes (true)</li>
+ *   <li>election.log.maxArchives - gzipped segments kept (10)</li>
+ *   <li>election.log.flushOnShutdown - drain the queue from a shutdown hook (true)</li>
+ *   <li>election.log.shutdownTimeoutMs - how long that drain may take (2000)</li>
+ * </ul>
+ */
 public class LoggingService {
     private static final String LOG_FILE = "log.txt";
+    private static final String ARCHIVE_PREFIX = "log-";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter ARCHIVE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final int MAX_BATCH = 512;
+    // Queue slots kept free of log lines for commands
+    private static final int COMMAND_SLOTS = 64;
+    private static final MetricsRegistry.Counter WRITTEN = MetricsRegistry.getInstance().counter("log.entries.written");
+    private static final MetricsRegistry.Timer BATCH_TIMER = MetricsRegistry.getInstance().timer("log.batchWrite");
+    private static final MetricsRegistry.Counter ERRORS = MetricsRegistry.getInstance().counter("log.errors");
     private static LoggingService instance;
     
+    // What to do with a new entry when the queue is full
+    public enum OverflowPolicy { DROP_NEWEST, DROP_OLDEST, BLOCK }
+    
+    // A log line, or a command the writer thread runs in order with the lines before it
+    private static class Entry {
+        final long timeMillis;
+        final String message;
+        final Command command;
+        final CompletableFuture<Boolean> done;
+        
+        Entry(long timeMillis, String message) {
+            this(timeMillis, message, null, null);
+        }
+        
+        Entry(long timeMillis, String message, Command command, CompletableFuture<Boolean> done) {
+            this.timeMillis = timeMillis;
+            this.message = message;
+            this.command = command;
+            this.done = done;
+        }
+    }
+    
+    private enum Command { FLUSH, CLEAR, STOP }
+    
+    private final BlockingQueue<Entry> queue;
+    // One permit per log line, and per command, the queue may still take
+    private final Semaphore lineSlots;
+    private final Semaphore commandSlots = new Semaphore(COMMAND_SLOTS);
+    private final OverflowPolicy overflowPolicy;
+    private final long maxBytes;
+    private final boolean rotateDaily;
+    private final int maxArchives;
+    // Dropped entries not yet reported in the file, and all dropped since startup
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong droppedTotal = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    
+    // Only touched by the writer thread
+    private BufferedWriter writer;
+    private long fileBytes;
+    private LocalDate fileDate;
+    
     private LoggingService() {
+        int capacity = Integer.getInteger("election.log.capacity", 8192);
+        queue = new ArrayBlockingQueue<>(capacity + COMMAND_SLOTS);
+        lineSlots = new Semaphore(capacity);
+        overflowPolicy = OverflowPolicy.valueOf(System.getProperty("election.log.overflow", "DROP_NEWEST"));
+        maxBytes = Long.getLong("election.log.maxBytes", 10L * 1024 * 1024);
+        rotateDaily = Boolean.parseBoolean(System.getProperty("election.log.rotateDaily", "true"));
+        maxArchives = Integer.getInteger("election.log.maxArchives", 10);
+        
         // Create the log file if it doesn't exist
+        boolean created = false;
         try {
             File logFile = new File(LOG_FILE);
             if (!logFile.exists()) {
-                logFile.createNewFile();
-                log("Logging service initialized");
+                created = logFile.createNewFile();
             }
         } catch (IOException e) {
             System.err.println("Error initializing log file: " + e.getMessage());
         }
+        
+        MetricsRegistry.getInstance().gauge("log.queue.depth", queue::size);
+        MetricsRegistry.getInstance().gauge("log.dropped", droppedTotal::get);
+        
+        writerThread = new Thread(this::run, "log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        
+        if (Boolean.parseBoolean(System.getProperty("election.log.flushOnShutdown", "true"))) {
+            long timeout = Long.getLong("election.log.shutdownTimeoutMs", 2000);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(timeout), "log-shutdown"));
+        }
+        if (created) {
+            log("Logging service initialized");
+        }
     }
     
-    public static LoggingService getInstance() {
+    public static synchronized LoggingService getInstance() {
         if (instance == null) {
             instance = new LoggingService();
         }
@@ -32,14 +146,55 @@ public class LoggingService {
     }
     
     public void log(String message) {
-        String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
-        String logEntry = String.format("[%s] %s", timestamp, message);
+        Entry entry = new Entry(System.currentTimeMillis(), message);
+        if (!running) {
+            System.err.println("Log entry after shutdown: " + message);
+            return;
+        }
         
-        try (PrintWriter writer = new PrintWriter(new FileWriter(LOG_FILE, true))) {
-            writer.println(logEntry);
-        } catch (IOException e) {
-            System.err.println("Error writing to log file: " + e.getMessage());
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    lineSlots.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop();
+                    return;
+                }
+                break;
+            case DROP_OLDEST:
+                // A removed line's slot passes to the new one
+                while (!lineSlots.tryAcquire()) {
+                    if (removeOldestLine()) {
+                        drop();
+                        break;
+                    }
+                }
+                break;
+            default:
+                if (!lineSlots.tryAcquire()) {
+                    drop();
+                    return;
+                }
+        }
+        // Cannot fail: lines hold a slot each and commands have their own
+        queue.offer(entry);
+    }
+    
+    // Removes the oldest queued log line, leaving commands where they are
+    private boolean removeOldestLine() {
+        for (Entry entry : queue) {
+            if (entry.command == null) {
+                // False if the writer took it meanwhile
+                return queue.remove(entry);
+            }
         }
+        return false;
+    }
+    
+    private void drop() {
+        dropped.incrementAndGet();
+        droppedTotal.incrementAndGet();
     }
     
     public void logSelection(String candidateName, String listName, int selectionOrder) {
@@ -58,22 +213,245 @@ public class LoggingService {
         log(String.format("ERROR in %s: %s - %s", context, e.getClass().getSimpleName(), e.getMessage()));
     }
     
+    // Entries lost to the overflow policy since startup
+    public long getDroppedCount() {
+        return droppedTotal.get();
+    }
+    
+    /**
+     * Waits until everything logged before this call is written and flushed.
+     * Returns false on timeout.
+     */
+    public boolean flush(long timeoutMillis) {
+        return runCommand(Command.FLUSH, timeoutMillis);
+    }
+    
     // Method to clear all logs
     public boolean clearLogs() {
+        // Runs on the writer thread after the entries already queued
+        return runCommand(Command.CLEAR, 10_000);
+    }
+    
+    /**
+     * Writes out the queued entries, closes the file and stops the writer.
+     * Entries logged afterwards go to stderr. Returns false if the queue was
+     * not drained within the timeout.
+     */
+    public boolean shutdown(long timeoutMillis) {
+        if (!running) {
+            return true;
+        }
+        boolean drained = runCommand(Command.STOP, timeoutMillis);
+        running = false;
+        return drained;
+    }
+    
+    private boolean runCommand(Command command, long timeoutMillis) {
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
         try {
-            File logFile = new File(LOG_FILE);
-            if (logFile.exists()) {
-                // Create a new empty file to replace the existing one
-                try (PrintWriter writer = new PrintWriter(new FileWriter(LOG_FILE, false))) {
-                    writer.println("[" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + "] Logs cleared");
+            // Commands always wait for space, whatever the overflow policy
+            if (!commandSlots.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            queue.offer(new Entry(System.currentTimeMillis(), null, command, done));
+            return done.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            System.err.println("Log " + command.name().toLowerCase() + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private void run() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                Entry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
                 }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                int commands = (int) batch.stream().filter(entry -> entry.command != null).count();
+                lineSlots.release(batch.size() - commands);
+                commandSlots.release(commands);
+                long start = System.nanoTime();
+                
+                for (Entry entry : batch) {
+                    if (entry.command == null) {
+                        write(entry);
+                    } else {
+                        stopped = runOnWriter(entry) || stopped;
+                    }
+                }
+                flushWriter();
+                BATCH_TIMER.stop(start);
+            } catch (InterruptedException e) {
+                stopped = true;
+            } finally {
+                batch.clear();
+            }
+        }
+        closeWriter();
+    }
+    
+    // Returns true when the writer should stop
+    private boolean runOnWriter(Entry entry) {
+        boolean success = true;
+        switch (entry.command) {
+            case CLEAR:
+                success = clearFiles();
+                break;
+            case STOP:
+                flushWriter();
+                entry.done.complete(true);
                 return true;
+            default:
+                break;
+        }
+        flushWriter();
+        entry.done.complete(success);
+        return false;
+    }
+    
+    private void write(Entry entry) {
+        long missed = dropped.getAndSet(0);
+        if (missed > 0) {
+            writeLine(entry.timeMillis, missed + " log entries were dropped because the log queue was full");
+        }
+        writeLine(entry.timeMillis, entry.message);
+    }
+    
+    private void writeLine(long timeMillis, String message) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneId.systemDefault());
+        String logEntry = String.format("[%s] %s", TIMESTAMP_FORMAT.format(time), message);
+        
+        try {
+            if (writer == null) {
+                openWriter();
             }
-            return false;
+            if (fileBytes >= maxBytes || (rotateDaily && !time.toLocalDate().equals(fileDate))) {
+                rotate();
+            }
+            writer.write(logEntry);
+            writer.newLine();
+            fileBytes += utf8Length(logEntry) + System.lineSeparator().length();
+            WRITTEN.increment();
         } catch (IOException e) {
-            System.err.println("Error clearing log file: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            ERRORS.increment();
+            System.err.println("Error writing to log file: " + e.getMessage());
+            closeWriter();
+        }
+    }
+    
+    // Encoded size of a line, without encoding it a second time
+    private static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+    
+    private void openWriter() throws IOException {
+        File logFile = new File(LOG_FILE);
+        fileBytes = logFile.length();
+        fileDate = logFile.exists() && fileBytes > 0
+                ? LocalDate.ofInstant(Instant.ofEpochMilli(logFile.lastModified()), ZoneId.systemDefault())
+                : LocalDate.now();
+        writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(logFile, true), StandardCharsets.UTF_8));
+    }
+    
+    private void flushWriter() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Error flushing log file: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Error closing log file: " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+    
+    // Moves the current file to a gzipped archive and starts a new one
+    private void rotate() throws IOException {
+        closeWriter();
+        File logFile = new File(LOG_FILE);
+        if (logFile.length() > 0) {
+            String name = ARCHIVE_PREFIX + ARCHIVE_FORMAT.format(LocalDateTime.now());
+            File archive = new File(logFile.getAbsoluteFile().getParentFile(), name + ".txt.gz");
+            File rotated = new File(logFile.getAbsoluteFile().getParentFile(), name + ".txt");
+            if (logFile.renameTo(rotated)) {
+                try (InputStream in = new FileInputStream(rotated);
+                     OutputStream out = new GZIPOutputStream(new FileOutputStream(archive))) {
+                    in.transferTo(out);
+                }
+                rotated.delete();
+            }
+            pruneArchives();
+        }
+        openWriter();
+        fileDate = LocalDate.now();
+    }
+    
+    private File[] archives() {
+        File dir = new File(LOG_FILE).getAbsoluteFile().getParentFile();
+        File[] files = dir.listFiles((d, name) -> name.startsWith(ARCHIVE_PREFIX) && name.endsWith(".txt.gz"));
+        if (files == null) {
+            return new File[0];
+        }
+        // Names sort by rotation time
+        Arrays.sort(files);
+        return files;
+    }
+    
+    private void pruneArchives() {
+        File[] files = archives();
+        for (int i = 0; i < files.length - maxArchives; i++) {
+            files[i].delete();
+        }
+    }
+    
+    private boolean clearFiles() {
+        closeWriter();
+        boolean success = true;
+        for (File archive : archives()) {
+            success &= archive.delete();
+        }
+        
+        // Create a new empty file to replace the existing one
+        File logFile = new File(LOG_FILE);
+        if (logFile.exists() && !logFile.delete()) {
+            System.err.println("Error clearing log file " + logFile);
+            success = false;
         }
+        dropped.set(0);
+        writeLine(System.currentTimeMillis(), "Logs cleared");
+        return success;
     }
-} 
\ No newline at end of file
+}
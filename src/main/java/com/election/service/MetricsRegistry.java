@@ -0,0 +1,453 @@
+package com.election.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonWriter;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters, histograms, timers and gauges for the hot paths, published as
+ * JMX MBeans under com.election:type=...,name=... and written periodically
+ * to a JSON snapshot file so kiosks can be watched without a profiler. A
+ * last snapshot is written on shutdown or when the JVM exits.
+ *
+ * Recording never locks: counters are LongAdders and histograms bump one
+ * slot of a fixed array of log-linear buckets (8 per power of two, so
+ * percentiles are within about 12%). Services look their metrics up once
+ * and keep them in static fields.
+ *
+ * Tuned with system properties:
+ * <ul>
+ *   <li>election.metrics.file - snapshot file (metrics.json)</li>
+ *   <li>election.metrics.intervalSeconds - seconds between snapshots, 0 turns them off (60)</li>
+ *   <li>election.metrics.jmx - register the MBeans (true)</li>
+ * </ul>
+ */
+public class MetricsRegistry {
+    private static final String DOMAIN = "com.election";
+    private static MetricsRegistry instance;
+
+    public interface CounterMXBean {
+        long getCount();
+    }
+
+    public interface GaugeMXBean {
+        long getValue();
+    }
+
+    public interface HistogramMXBean {
+        long getCount();
+        double getMean();
+        long getP50();
+        long getP95();
+        long getP99();
+        long getMax();
+    }
+
+    public interface TimerMXBean {
+        long getCount();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP95Millis();
+        double getP99Millis();
+        double getMaxMillis();
+    }
+
+    public static class Counter implements CounterMXBean {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+    }
+
+    public static class Gauge implements GaugeMXBean {
+        private final LongSupplier supplier;
+
+        Gauge(LongSupplier supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public long getValue() {
+            return supplier.getAsLong();
+        }
+    }
+
+    public static class Histogram implements HistogramMXBean {
+        // Values below 8 get their own bucket, then 8 buckets per power of two
+        private static final int BUCKETS = 61 * 8;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+        public void record(long value) {
+            long recorded = Math.max(value, 0);
+            buckets.incrementAndGet(bucketOf(recorded));
+            count.increment();
+            sum.add(recorded);
+            max.accumulate(recorded);
+        }
+
+        private static int bucketOf(long value) {
+            if (value < 8) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return (exponent - 2) * 8 + (int) ((value >>> (exponent - 3)) & 7);
+        }
+
+        private static long lowerBound(int bucket) {
+            if (bucket < 8) {
+                return bucket;
+            }
+            int exponent = bucket / 8 + 2;
+            return (8L + bucket % 8) << (exponent - 3);
+        }
+
+        // Middle of the bucket holding the q-th value, never above the largest value seen
+        public long percentile(double q) {
+            long total = count.sum();
+            if (total == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    long low = lowerBound(i);
+                    long width = i < 8 ? 1 : 1L << (i / 8 - 1);
+                    return Math.min(low + (width - 1) / 2, max.get());
+                }
+            }
+            return max.get();
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        @Override
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        @Override
+        public long getP50() {
+            return percentile(0.50);
+        }
+
+        @Override
+        public long getP95() {
+            return percentile(0.95);
+        }
+
+        @Override
+        public long getP99() {
+            return percentile(0.99);
+        }
+
+        @Override
+        public long getMax() {
+            return max.get();
+        }
+    }
+
+    // A histogram of durations in nanoseconds, reported in milliseconds
+    public static class Timer implements TimerMXBean {
+        private final Histogram nanos = new Histogram();
+
+        public void record(long elapsedNanos) {
+            nanos.record(elapsedNanos);
+        }
+
+        // Records the time since a System.nanoTime() taken at the start
+        public void stop(long startNanos) {
+            nanos.record(System.nanoTime() - startNanos);
+        }
+
+        @Override
+        public long getCount() {
+            return nanos.getCount();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return nanos.getMean() / 1e6;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return nanos.getP50() / 1e6;
+        }
+
+        @Override
+        public double getP95Millis() {
+            return nanos.getP95() / 1e6;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return nanos.getP99() / 1e6;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return nanos.getMax() / 1e6;
+        }
+    }
+
+    private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+    private final boolean jmx;
+    private final File snapshotFile;
+    private final long startMillis = System.currentTimeMillis();
+    // Counts at the previous snapshot, for per-second rates
+    private final Map<String, Long> previousCounts = new HashMap<>();
+    private long previousSnapshotNanos = System.nanoTime();
+    private ScheduledExecutorService scheduler;
+
+    private MetricsRegistry() {
+        jmx = Boolean.parseBoolean(System.getProperty("election.metrics.jmx", "true"));
+        snapshotFile = new File(System.getProperty("election.metrics.file", "metrics.json"));
+
+        long interval = Long.getLong("election.metrics.intervalSeconds", 60);
+        if (interval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(this::writeSnapshot, interval, interval, TimeUnit.SECONDS);
+            // The launchers end with System.exit, the final snapshot must still be written
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "metrics-shutdown"));
+        }
+    }
+
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    public Counter counter(String name) {
+        return register(name, "Counter", Counter.class, Counter::new);
+    }
+
+    public Histogram histogram(String name) {
+        return register(name, "Histogram", Histogram.class, Histogram::new);
+    }
+
+    public Timer timer(String name) {
+        return register(name, "Timer", Timer.class, Timer::new);
+    }
+
+    // A gauge reads its value when asked; registering a name again replaces the supplier
+    public synchronized Gauge gauge(String name, LongSupplier supplier) {
+        Gauge gauge = new Gauge(supplier);
+        Object previous = metrics.put(name, gauge);
+        if (previous != null && !(previous instanceof Gauge)) {
+            metrics.put(name, previous);
+            throw new IllegalArgumentException("Metric " + name + " is already a " + previous.getClass().getSimpleName());
+        }
+        if (previous != null) {
+            unregisterBean("Gauge", name);
+        }
+        registerBean("Gauge", name, gauge);
+        return gauge;
+    }
+
+    private synchronized <T> T register(String name, String type, Class<T> kind, Supplier<T> factory) {
+        Object existing = metrics.get(name);
+        if (existing != null) {
+            if (!kind.isInstance(existing)) {
+                throw new IllegalArgumentException("Metric " + name + " is already a " + existing.getClass().getSimpleName());
+            }
+            return kind.cast(existing);
+        }
+        T metric = factory.get();
+        metrics.put(name, metric);
+        registerBean(type, name, metric);
+        return metric;
+    }
+
+    private void registerBean(String type, String name, Object bean) {
+        if (!jmx) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(bean, objectName(type, name));
+        } catch (JMException e) {
+            System.err.println("Error registering metric " + name + " with JMX: " + e.getMessage());
+        }
+    }
+
+    private void unregisterBean(String type, String name) {
+        if (!jmx) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(type, name));
+        } catch (JMException e) {
+            System.err.println("Error unregistering metric " + name + " from JMX: " + e.getMessage());
+        }
+    }
+
+    private static ObjectName objectName(String type, String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * Every metric by name, in name order. Counters and gauges are plain
+     * numbers; histograms and timers are maps of count, mean, percentiles
+     * and max (timers in milliseconds).
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : new TreeMap<>(metrics).entrySet()) {
+            Object metric = entry.getValue();
+            if (metric instanceof Counter) {
+                snapshot.put(entry.getKey(), ((Counter) metric).getCount());
+            } else if (metric instanceof Gauge) {
+                snapshot.put(entry.getKey(), ((Gauge) metric).getValue());
+            } else if (metric instanceof Histogram) {
+                Histogram histogram = (Histogram) metric;
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("count", histogram.getCount());
+                values.put("mean", histogram.getMean());
+                values.put("p50", histogram.getP50());
+                values.put("p95", histogram.getP95());
+                values.put("p99", histogram.getP99());
+                values.put("max", histogram.getMax());
+                snapshot.put(entry.getKey(), values);
+            } else if (metric instanceof Timer) {
+                Timer timer = (Timer) metric;
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("count", timer.getCount());
+                values.put("meanMs", timer.getMeanMillis());
+                values.put("p50Ms", timer.getP50Millis());
+                values.put("p95Ms", timer.getP95Millis());
+                values.put("p99Ms", timer.getP99Millis());
+                values.put("maxMs", timer.getMaxMillis());
+                snapshot.put(entry.getKey(), values);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes the snapshot to the metrics file, replacing it in one move so
+     * readers never see half a file. Counters, histograms and timers also get
+     * a per-second rate since the previous write.
+     */
+    public synchronized void writeSnapshot() {
+        long now = System.nanoTime();
+        double seconds = Math.max((now - previousSnapshotNanos) / 1e9, 1e-9);
+        previousSnapshotNanos = now;
+
+        JsonObjectBuilder metricsJson = Json.createObjectBuilder();
+        for (Map.Entry<String, Object> entry : snapshot().entrySet()) {
+            String name = entry.getKey();
+            Object value = entry.getValue();
+            if (value instanceof Map) {
+                JsonObjectBuilder values = Json.createObjectBuilder();
+                for (Map.Entry<?, ?> field : ((Map<?, ?>) value).entrySet()) {
+                    Number number = (Number) field.getValue();
+                    if (number instanceof Double) {
+                        values.add(field.getKey().toString(), number.doubleValue());
+                    } else {
+                        values.add(field.getKey().toString(), number.longValue());
+                    }
+                }
+                long count = ((Number) ((Map<?, ?>) value).get("count")).longValue();
+                values.add("ratePerSecond", rate(name, count, seconds));
+                metricsJson.add(name, values);
+            } else if (metrics.get(name) instanceof Counter) {
+                long count = (Long) value;
+                metricsJson.add(name, Json.createObjectBuilder()
+                        .add("count", count)
+                        .add("ratePerSecond", rate(name, count, seconds)));
+            } else {
+                metricsJson.add(name, (Long) value);
+            }
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        JsonObjectBuilder root = Json.createObjectBuilder()
+                .add("timestamp", System.currentTimeMillis())
+                .add("uptimeMs", System.currentTimeMillis() - startMillis)
+                .add("heapUsedBytes", runtime.totalMemory() - runtime.freeMemory())
+                .add("metrics", metricsJson);
+
+        File parent = snapshotFile.getAbsoluteFile().getParentFile();
+        File temp = new File(parent, snapshotFile.getName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp.toPath());
+                 JsonWriter writer = Json.createWriter(out)) {
+                writer.writeObject(root.build());
+            }
+            Files.move(temp.toPath(), snapshotFile.getAbsoluteFile().toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error writing metrics snapshot: " + e.getMessage());
+        }
+    }
+
+    private double rate(String name, long count, double seconds) {
+        Long previous = previousCounts.put(name, count);
+        return (count - (previous != null ? previous : 0)) / seconds;
+    }
+
+    public File getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    // Stops the periodic writer after one last snapshot
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            writeSnapshot();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.election.service;
 
+import com.election.model.Ballot;
 import com.election.model.Candidate;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.PdfPCell;
@@ -8,49 +9,149 @@ import com.itextpdf.text.pdf.PdfWriter;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
 
 public class PdfService {
     private static final String OUTPUT_DIR = "output";
+    private static final int REPORT_PATTERN_LIMIT = 100;
+    // Saved-list rows added to the statistics report between flushes
+    private static final int STREAM_CHUNK_ROWS = 500;
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS");
+    private static final DateTimeFormatter DISPLAY_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final MetricsRegistry.Timer RENDER_TIMER = MetricsRegistry.getInstance().timer("pdf.render");
+    private static final MetricsRegistry.Counter PAGES = MetricsRegistry.getInstance().counter("pdf.pages");
+    private static final MetricsRegistry.Timer STATISTICS_TIMER = MetricsRegistry.getInstance().timer("pdf.statisticsReport");
+    private static final MetricsRegistry.Counter ERRORS = MetricsRegistry.getInstance().counter("pdf.errors");
+    
+    // Fonts and colours are only read while rendering, so every report shares them
+    private static final Font TITLE_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, BaseColor.BLACK);
+    private static final Font TIME_FONT = FontFactory.getFont(FontFactory.HELVETICA, 12, BaseColor.GRAY);
+    private static final Font HEADER_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.WHITE);
+    private static final Font ROW_FONT = FontFactory.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
+    private static final Font SMALL_ROW_FONT = FontFactory.getFont(FontFactory.HELVETICA, 9, BaseColor.BLACK);
+    private static final Font SECTION_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, BaseColor.BLACK);
+    private static final BaseColor HEADER_BG = new BaseColor(44, 62, 80);
+    private static final BaseColor ALT_ROW_BG = new BaseColor(240, 240, 240);
     
     private static PdfService instance;
     
-    private PdfService() {
+    private final String outputDir;
+    private final AtomicLong reportSequence = new AtomicLong();
+    
+    private PdfService(String outputDir) {
+        this.outputDir = outputDir;
+        
         // Create output directory if it doesn't exist
-        File outputDir = new File(OUTPUT_DIR);
-        if (!outputDir.exists()) {
-            outputDir.mkdir();
+        File dir = new File(outputDir);
+        if (!dir.exists()) {
+            dir.mkdirs();
         }
     }
     
     public static PdfService getInstance() {
         if (instance == null) {
-            instance = new PdfService();
+            instance = new PdfService(OUTPUT_DIR);
         }
         return instance;
     }
     
+    // Writes reports to another directory, e.g. a temp directory for benchmarks
+    public static PdfService forOutputDirectory(String outputDir) {
+        return new PdfService(outputDir);
+    }
+    
     public String generateSelectionReport(List<Candidate> selectedCandidates) {
-        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-        String filename = OUTPUT_DIR + "/selection_" + timestamp + ".pdf";
-        
         try {
-            Document document = new Document();
-            PdfWriter.getInstance(document, new FileOutputStream(filename));
-            document.open();
+            return renderSelectionReport(selectedCandidates, fraction -> { }, () -> false);
             
+        } catch (Exception e) {
+            System.err.println("Error generating PDF: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Writes the on-screen selection report and returns its filename. Progress
+     * from 0 to 1 goes to {@code progress}; once {@code cancelled} turns true
+     * rendering stops, the partial file is deleted and a CancellationException
+     * is thrown.
+     */
+    String renderSelectionReport(List<Candidate> selectedCandidates, DoubleConsumer progress,
+                                 BooleanSupplier cancelled) throws IOException, DocumentException {
+        // Millisecond time plus a sequence number, so quick successive saves never share a file
+        String timestamp = FILE_TIME_FORMAT.format(LocalDateTime.now());
+        String filename = outputDir + "/selection_" + timestamp + "_" + reportSequence.incrementAndGet() + ".pdf";
+        File file = new File(filename);
+        
+        try {
+            writeReport(file, "Election Selection Report",
+                    "Generated: " + DISPLAY_TIME_FORMAT.format(LocalDateTime.now()), selectedCandidates,
+                    progress, cancelled);
+            return filename;
+        } catch (CancellationException e) {
+            file.delete();
+            throw e;
+        }
+    }
+    
+    /**
+     * Regenerates the report for a saved session as session_<id>.pdf in the
+     * given directory and returns its page count. Safe to call from several
+     * threads at once.
+     */
+    public int generateSessionReport(Ballot ballot, File directory) throws IOException, DocumentException {
+        File file = new File(directory, "session_" + ballot.getSessionId() + ".pdf");
+        String saved = ballot.getTimestamp().length() > 19 ? ballot.getTimestamp().substring(0, 19) : ballot.getTimestamp();
+        return writeReport(file, "Election Selection Report",
+                "Session " + ballot.getSessionId() + " saved " + saved, ballot.getCandidates(),
+                fraction -> { }, () -> false);
+    }
+    
+    public File getOutputDirectory() {
+        return new File(outputDir);
+    }
+    
+    // Writes one report and returns the number of pages it took
+    private int writeReport(File file, String titleText, String subtitle, List<Candidate> selectedCandidates,
+                            DoubleConsumer progress, BooleanSupplier cancelled) throws IOException, DocumentException {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("Report cancelled");
+        }
+        long start = System.nanoTime();
+        Document document = new Document();
+        PdfWriter writer;
+        try {
+            writer = PdfWriter.getInstance(document, new FileOutputStream(file));
+        } catch (IOException | DocumentException e) {
+            ERRORS.increment();
+            throw e;
+        }
+        document.open();
+        
+        try {
             // Add title
-            Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, BaseColor.BLACK);
-            Paragraph title = new Paragraph("Election Selection Report", titleFont);
+            Paragraph title = new Paragraph(titleText, TITLE_FONT);
             title.setAlignment(Element.ALIGN_CENTER);
             document.add(title);
             
             // Add timestamp
-            Font timeFont = FontFactory.getFont(FontFactory.HELVETICA, 12, BaseColor.GRAY);
-            Paragraph timeP = new Paragraph("Generated: " + 
-                    new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()), timeFont);
+            Paragraph timeP = new Paragraph(subtitle, TIME_FONT);
             timeP.setAlignment(Element.ALIGN_CENTER);
             document.add(timeP);
             document.add(Chunk.NEWLINE);
@@ -60,38 +161,215 @@ public class PdfService {
             table.setWidthPercentage(100);
             
             // Add table headers
-            Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, BaseColor.WHITE);
-            BaseColor headerBg = new BaseColor(44, 62, 80);
-            
-            addTableHeader(table, "Selection Order", headerFont, headerBg);
-            addTableHeader(table, "Candidate Name", headerFont, headerBg);
-            addTableHeader(table, "List", headerFont, headerBg);
-            addTableHeader(table, "List Position", headerFont, headerBg);
+            addTableHeader(table, "Selection Order", HEADER_FONT, HEADER_BG);
+            addTableHeader(table, "Candidate Name", HEADER_FONT, HEADER_BG);
+            addTableHeader(table, "List", HEADER_FONT, HEADER_BG);
+            addTableHeader(table, "List Position", HEADER_FONT, HEADER_BG);
             
             // Add data rows
-            Font rowFont = FontFactory.getFont(FontFactory.HELVETICA, 12, BaseColor.BLACK);
-            BaseColor altRowBg = new BaseColor(240, 240, 240);
-            
-            for (Candidate candidate : selectedCandidates) {
-                boolean isAlternateRow = selectedCandidates.indexOf(candidate) % 2 == 1;
-                BaseColor rowBg = isAlternateRow ? altRowBg : BaseColor.WHITE;
+            int rows = selectedCandidates.size();
+            for (int row = 0; row < rows; row++) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Report cancelled");
+                }
+                progress.accept(0.9 * row / rows);
+                Candidate candidate = selectedCandidates.get(row);
+                BaseColor rowBg = row % 2 == 1 ? ALT_ROW_BG : BaseColor.WHITE;
                 
-                addTableCell(table, String.valueOf(candidate.getSelectionOrder()), rowFont, rowBg);
-                addTableCell(table, candidate.getName(), rowFont, rowBg);
-                addTableCell(table, candidate.getList(), rowFont, rowBg);
-                addTableCell(table, String.valueOf(candidate.getIndex() + 1), rowFont, rowBg);
+                addTableCell(table, String.valueOf(candidate.getSelectionOrder()), ROW_FONT, rowBg);
+                addTableCell(table, candidate.getName(), ROW_FONT, rowBg);
+                addTableCell(table, candidate.getList(), ROW_FONT, rowBg);
+                addTableCell(table, String.valueOf(candidate.getIndex() + 1), ROW_FONT, rowBg);
             }
             
             document.add(table);
+            progress.accept(0.9);
+            int pages = writer.getPageNumber();
+            RENDER_TIMER.stop(start);
+            PAGES.add(pages);
+            return pages;
+        } catch (DocumentException | RuntimeException e) {
+            if (!(e instanceof CancellationException)) {
+                ERRORS.increment();
+            }
+            throw e;
+        } finally {
             document.close();
+        }
+    }
+    
+    /**
+     * Writes the statistics dialog's content as one PDF: candidate counts, the
+     * most common selection patterns and every saved list. Saved lists are
+     * streamed from a database cursor into a table that is flushed to the
+     * document every few hundred rows, so finished pages leave the heap and
+     * memory stays flat however long the history is. The returned map holds
+     * the filename, session and page counts, elapsed time and peak heap use,
+     * or an "error" entry.
+     */
+    public Map<String, Object> generateStatisticsReport(DatabaseService databaseService) {
+        String timestamp = FILE_TIME_FORMAT.format(LocalDateTime.now());
+        String filename = outputDir + "/statistics_" + timestamp + "_" + reportSequence.incrementAndGet() + ".pdf";
+        Map<String, Object> summary = new LinkedHashMap<>();
+        
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long start = System.nanoTime();
+        
+        Document document = new Document();
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(filename));
+            document.open();
             
-            return filename;
+            Paragraph title = new Paragraph("Election Results Report", TITLE_FONT);
+            title.setAlignment(Element.ALIGN_CENTER);
+            document.add(title);
+            Paragraph timeP = new Paragraph("Generated: " + DISPLAY_TIME_FORMAT.format(LocalDateTime.now()), TIME_FONT);
+            timeP.setAlignment(Element.ALIGN_CENTER);
+            document.add(timeP);
             
+            addCandidateCounts(document, databaseService.getTallies().snapshot());
+            addSelectionPatterns(document, databaseService.getIdenticalSelectionBatches(REPORT_PATTERN_LIMIT));
+            int sessions = addSavedLists(document, databaseService);
+            
+            summary.put("filename", filename);
+            summary.put("sessions", sessions);
+            summary.put("pages", writer.getPageNumber());
+            STATISTICS_TIMER.stop(start);
+            PAGES.add(writer.getPageNumber());
         } catch (Exception e) {
-            System.err.println("Error generating PDF: " + e.getMessage());
+            ERRORS.increment();
+            System.err.println("Error generating statistics PDF: " + e.getMessage());
             e.printStackTrace();
-            return null;
+            summary.put("error", e.getMessage());
+        } finally {
+            if (document.isOpen()) {
+                document.close();
+            }
+        }
+        
+        // Sum of each heap pool's own peak, so an upper bound on the true peak
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        summary.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+        summary.put("peakHeapBytes", peakHeap);
+        return summary;
+    }
+    
+    private void addCandidateCounts(Document document, TallyEngine.Snapshot tallies) throws DocumentException {
+        addSectionTitle(document, "Candidate Statistics");
+        
+        Integer[] order = new Integer[tallies.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(tallies.getCount(b), tallies.getCount(a)));
+        
+        PdfPTable table = new PdfPTable(new float[] { 3, 2, 1 });
+        table.setWidthPercentage(100);
+        table.setHeaderRows(1);
+        addTableHeader(table, "Candidate", HEADER_FONT, HEADER_BG);
+        addTableHeader(table, "List", HEADER_FONT, HEADER_BG);
+        addTableHeader(table, "Selections", HEADER_FONT, HEADER_BG);
+        for (int row = 0; row < order.length; row++) {
+            int i = order[row];
+            BaseColor rowBg = row % 2 == 1 ? ALT_ROW_BG : BaseColor.WHITE;
+            addTableCell(table, tallies.getName(i), ROW_FONT, rowBg);
+            addTableCell(table, tallies.getList(i), ROW_FONT, rowBg);
+            addTableCell(table, String.valueOf(tallies.getCount(i)), ROW_FONT, rowBg);
         }
+        document.add(table);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void addSelectionPatterns(Document document, List<Map<String, Object>> batches) throws DocumentException {
+        addSectionTitle(document, "Most Common Selection Patterns");
+        
+        PdfPTable table = new PdfPTable(new float[] { 1, 5 });
+        table.setWidthPercentage(100);
+        table.setHeaderRows(1);
+        addTableHeader(table, "Lists", HEADER_FONT, HEADER_BG);
+        addTableHeader(table, "Candidates in order", HEADER_FONT, HEADER_BG);
+        for (int row = 0; row < batches.size(); row++) {
+            Map<String, Object> batch = batches.get(row);
+            StringBuilder candidates = new StringBuilder();
+            for (Map<String, Object> candidate : (List<Map<String, Object>>) batch.get("candidates")) {
+                if (candidates.length() > 0) {
+                    candidates.append(", ");
+                }
+                candidates.append(candidate.get("order")).append(". ").append(candidate.get("name"));
+            }
+            BaseColor rowBg = row % 2 == 1 ? ALT_ROW_BG : BaseColor.WHITE;
+            addTableCell(table, String.valueOf(batch.get("count")), ROW_FONT, rowBg);
+            addTableCell(table, candidates.toString(), ROW_FONT, rowBg);
+        }
+        document.add(table);
+    }
+    
+    // Streams every saved list into a table that is flushed in chunks
+    private int addSavedLists(Document document, DatabaseService databaseService) throws SQLException, DocumentException {
+        addSectionTitle(document, "Saved Lists");
+        
+        // Numbered like the history tab, where #1 is the newest list
+        int total = databaseService.getSavedSessionsPage(null, 1).getTotalCount();
+        PdfPTable table = new PdfPTable(new float[] { 1, 2, 5 });
+        table.setWidthPercentage(100);
+        table.setHeaderRows(1);
+        table.setComplete(false);
+        addTableHeader(table, "List", HEADER_FONT, HEADER_BG);
+        addTableHeader(table, "Saved", HEADER_FONT, HEADER_BG);
+        addTableHeader(table, "Candidates in order", HEADER_FONT, HEADER_BG);
+        
+        int[] row = { 0 };
+        StringBuilder candidates = new StringBuilder();
+        try {
+            databaseService.streamBallots(null, null, null, ballot -> {
+                candidates.setLength(0);
+                for (Candidate candidate : ballot.getCandidates()) {
+                    if (candidates.length() > 0) {
+                        candidates.append(", ");
+                    }
+                    candidates.append(candidate.getSelectionOrder()).append(". ").append(candidate.getName());
+                }
+                String saved = ballot.getTimestamp().length() > 19 ? ballot.getTimestamp().substring(0, 19) : ballot.getTimestamp();
+                BaseColor rowBg = row[0] % 2 == 1 ? ALT_ROW_BG : BaseColor.WHITE;
+                addTableCell(table, "#" + Math.max(total - row[0], 1), SMALL_ROW_FONT, rowBg);
+                addTableCell(table, saved, SMALL_ROW_FONT, rowBg);
+                addTableCell(table, candidates.toString(), SMALL_ROW_FONT, rowBg);
+                
+                // Adding an incomplete table writes its finished rows out and drops them
+                if (++row[0] % STREAM_CHUNK_ROWS == 0) {
+                    try {
+                        document.add(table);
+                    } catch (DocumentException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof DocumentException) {
+                throw (DocumentException) e.getCause();
+            }
+            throw e;
+        }
+        
+        table.setComplete(true);
+        document.add(table);
+        return row[0];
+    }
+    
+    private void addSectionTitle(Document document, String text) throws DocumentException {
+        Paragraph heading = new Paragraph(text, SECTION_FONT);
+        heading.setSpacingBefore(16);
+        heading.setSpacingAfter(8);
+        document.add(heading);
     }
     
     private void addTableHeader(PdfPTable table, String text, Font font, BaseColor bg) {
@@ -114,14 +392,14 @@ public class PdfService {
     
     // Method to clear all PDF files
     public boolean clearPdfs() {
-        File outputDir = new File(OUTPUT_DIR);
-        if (!outputDir.exists()) {
-            outputDir.mkdir();
+        File reportDir = new File(outputDir);
+        if (!reportDir.exists()) {
+            reportDir.mkdirs();
             return true;
         }
         
         boolean success = true;
-        File[] files = outputDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".pdf"));
+        File[] files = reportDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".pdf"));
         
         if (files != null) {
             for (File file : files) {
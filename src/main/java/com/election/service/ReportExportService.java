@@ -0,0 +1,106 @@
+package com.election.service;
+
+import com.election.model.Ballot;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Regenerates selection report PDFs for saved sessions, e.g. receipts
+ * requested by an auditor.
+ *
+ * Sessions are streamed from the database one at a time and rendered on a
+ * small fixed pool. The pool's queue is bounded and the streaming thread
+ * renders reports itself when the queue is full, so memory stays flat however
+ * many sessions match.
+ */
+public class ReportExportService {
+    // Queued sessions per worker before the reading thread starts rendering itself
+    private static final int QUEUE_PER_THREAD = 4;
+
+    private final DatabaseService databaseService;
+    private final PdfService pdfService;
+
+    public ReportExportService(DatabaseService databaseService, PdfService pdfService) {
+        this.databaseService = databaseService;
+        this.pdfService = pdfService;
+    }
+
+    public static int defaultThreads() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Writes session_<id>.pdf into the PDF output directory for every session
+     * saved in [fromTimestamp, toTimestamp), optionally only those with the
+     * given pattern fingerprint. Null bounds are open. {@code progress}, if not
+     * null, receives the number of reports finished so far from the worker
+     * threads. The returned map holds the session, page and failure counts,
+     * elapsed time and pages per second.
+     */
+    public Map<String, Object> export(String fromTimestamp, String toTimestamp, Long fingerprint,
+                                      int threads, IntConsumer progress) throws SQLException {
+        File directory = pdfService.getOutputDirectory();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong pages = new AtomicLong();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-export");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        long start = System.nanoTime();
+        int sessions;
+        try {
+            sessions = databaseService.streamBallots(fromTimestamp, toTimestamp, fingerprint,
+                    ballot -> executor.execute(() -> render(ballot, directory, pages, failed, finished, progress)));
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        double pagesPerSecond = elapsedNanos > 0 ? pages.get() / (elapsedNanos / 1e9) : 0;
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("sessions", sessions);
+        summary.put("pages", pages.get());
+        summary.put("failed", failed.get());
+        summary.put("elapsedMs", elapsedNanos / 1_000_000);
+        summary.put("pagesPerSecond", pagesPerSecond);
+        summary.put("directory", directory.getPath());
+        return summary;
+    }
+
+    private void render(Ballot ballot, File directory, AtomicLong pages, AtomicInteger failed,
+                        AtomicInteger finished, IntConsumer progress) {
+        try {
+            pages.addAndGet(pdfService.generateSessionReport(ballot, directory));
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            System.err.println("Error exporting session " + ballot.getSessionId() + ": " + e.getMessage());
+        }
+        int done = finished.incrementAndGet();
+        if (progress != null) {
+            progress.accept(done);
+        }
+    }
+}
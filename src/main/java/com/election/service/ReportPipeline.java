@@ -0,0 +1,104 @@
+package com.election.service;
+
+import com.election.model.Candidate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Renders selection reports off the caller's thread, so the UI is free for
+ * the next voter while the previous receipt is written.
+ *
+ * Reports are rendered one at a time, in submission order, on a dedicated
+ * daemon thread. Each submit returns a future for the PDF's filename;
+ * cancelling the future skips a queued report or stops one mid-render and
+ * deletes its partial file.
+ */
+public class ReportPipeline {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final PdfService pdfService;
+    private final ThreadPoolExecutor executor;
+
+    public ReportPipeline(PdfService pdfService) {
+        this(pdfService, DEFAULT_CAPACITY);
+    }
+
+    public ReportPipeline(PdfService pdfService, int capacity) {
+        this.pdfService = pdfService;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-renderer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        MetricsRegistry.getInstance().gauge("reportPipeline.pending", this::getPendingCount);
+    }
+
+    /**
+     * Queues a report for the given selection. {@code progress}, if not null,
+     * is called from the render thread with values from 0 to 1. The future
+     * fails with a {@link RejectedExecutionException} when the queue is full
+     * or the pipeline is shut down, and with the rendering error otherwise.
+     */
+    public CompletableFuture<String> submit(List<Candidate> selectedCandidates, DoubleConsumer progress) {
+        // Copy the candidates, the UI resets its own instances right after submitting
+        List<Candidate> snapshot = new ArrayList<>(selectedCandidates.size());
+        for (Candidate candidate : selectedCandidates) {
+            Candidate copy = new Candidate(candidate.getName(), candidate.getList(), candidate.getIndex());
+            copy.setSelectionOrder(candidate.getSelectionOrder());
+            snapshot.add(copy);
+        }
+        DoubleConsumer listener = progress != null ? progress : fraction -> { };
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return; // cancelled while queued
+                }
+                try {
+                    listener.accept(0);
+                    String filename = pdfService.renderSelectionReport(snapshot, listener, future::isCancelled);
+                    listener.accept(1);
+                    future.complete(filename);
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new RejectedExecutionException(
+                    executor.isShutdown() ? "Report pipeline is shut down" : "Too many reports waiting, please try again"));
+        }
+        return future;
+    }
+
+    // Reports queued or rendering
+    public int getPendingCount() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    /**
+     * Stops accepting reports and waits for the queued ones to be written.
+     * Returns false if they did not finish within the timeout.
+     */
+    public boolean shutdown(long timeoutMillis) {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.err.println("Report pipeline did not finish within " + timeoutMillis + " ms, " +
+                getPendingCount() + " reports still pending");
+        return false;
+    }
+}
@@ -0,0 +1,96 @@
+package com.election.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies numbered schema migrations to the database. The schema version is
+ * kept in SQLite's {@code user_version} header field; each migration runs in
+ * its own transaction together with the version bump, so a failed step leaves
+ * the database at the previous version with its data intact.
+ */
+class SchemaMigrator {
+
+    @FunctionalInterface
+    interface Step {
+        void apply(ConnectionPool.PooledConnection conn) throws SQLException;
+    }
+
+    private static class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private final List<Migration> migrations = new ArrayList<>();
+
+    // Migrations must be added in ascending version order, starting at 1
+    SchemaMigrator add(int version, String description, Step step) {
+        int expected = migrations.size() + 1;
+        if (version != expected) {
+            throw new IllegalArgumentException("Expected migration " + expected + " but got " + version);
+        }
+        migrations.add(new Migration(version, description, step));
+        return this;
+    }
+
+    int latestVersion() {
+        return migrations.size();
+    }
+
+    /**
+     * Brings the database up to the latest version and returns the version it
+     * ended at. Each applied step is reported with its duration.
+     */
+    int migrate(ConnectionPool pool) throws SQLException {
+        int current = pool.read(SchemaMigrator::readVersion);
+        LoggingService logger = LoggingService.getInstance();
+
+        if (current > latestVersion()) {
+            throw new SQLException("Database schema version " + current +
+                    " is newer than this application supports (" + latestVersion() + ")");
+        }
+
+        for (Migration migration : migrations) {
+            if (migration.version <= current) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            pool.write(conn -> {
+                migration.step.apply(conn);
+                try (Statement stmt = conn.getConnection().createStatement()) {
+                    // PRAGMA does not accept bind parameters
+                    stmt.execute("PRAGMA user_version = " + migration.version);
+                }
+                return null;
+            });
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            String message = String.format("Schema migration %d (%s) applied in %d ms",
+                    migration.version, migration.description, elapsedMs);
+            System.out.println(message);
+            logger.log(message);
+            current = migration.version;
+        }
+
+        return current;
+    }
+
+    private static int readVersion(ConnectionPool.PooledConnection conn) throws SQLException {
+        PreparedStatement pstmt = conn.prepare("PRAGMA user_version");
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
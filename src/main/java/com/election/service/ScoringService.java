@@ -0,0 +1,254 @@
+package com.election.service;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Positional scoring over the ranked ballots, e.g. Borda counts.
+ *
+ * All selections are streamed once into a compact columnar form (candidate
+ * index and rank per pick, plus an offset per ballot). A fork-join pass then
+ * builds a candidate x rank histogram, and any weight vector is applied to
+ * that histogram afterwards.
+ */
+public class ScoringService {
+    // Ballots per fork-join leaf
+    private static final int SPLIT_THRESHOLD = 50_000;
+
+    private final DatabaseService databaseService;
+
+    public ScoringService(DatabaseService databaseService) {
+        this.databaseService = databaseService;
+    }
+
+    /** Borda weights: rank 1 scores maxRank points, the last rank scores 1. */
+    public static double[] bordaWeights(int maxRank) {
+        double[] weights = new double[maxRank];
+        for (int rank = 1; rank <= maxRank; rank++) {
+            weights[rank - 1] = maxRank - rank + 1;
+        }
+        return weights;
+    }
+
+    /**
+     * Scores every candidate with the given weights, where {@code weights[r - 1]}
+     * is the value of being ranked r. A null weight vector means Borda weights
+     * sized to the longest ballot. Ranks beyond the vector score nothing.
+     */
+    public Result score(double[] weights) throws SQLException {
+        long loadStart = System.nanoTime();
+        TallyEngine.Snapshot candidates = databaseService.getTallies().snapshot();
+        CompactBallots ballots = CompactBallots.load(databaseService, candidates);
+        long loadNanos = System.nanoTime() - loadStart;
+
+        long computeStart = System.nanoTime();
+        long[] histogram = ballots.rankHistogram();
+        double[] effectiveWeights = weights != null ? weights : bordaWeights(ballots.maxRank);
+        double[] scores = applyWeights(histogram, candidates.size(), ballots.maxRank, effectiveWeights);
+        long computeNanos = System.nanoTime() - computeStart;
+
+        return new Result(candidates, ballots.ballotCount, ballots.maxRank, histogram, scores,
+                loadNanos / 1_000_000, computeNanos / 1_000_000);
+    }
+
+    static double[] applyWeights(long[] histogram, int candidateCount, int maxRank, double[] weights) {
+        double[] scores = new double[candidateCount];
+        for (int c = 0; c < candidateCount; c++) {
+            double score = 0;
+            int row = c * maxRank;
+            for (int r = 0; r < maxRank && r < weights.length; r++) {
+                score += histogram[row + r] * weights[r];
+            }
+            scores[c] = score;
+        }
+        return scores;
+    }
+
+    /** Scores and rank histograms for every known candidate. */
+    public static final class Result {
+        private final TallyEngine.Snapshot candidates;
+        private final int ballotCount;
+        private final int maxRank;
+        private final long[] histogram;
+        private final double[] scores;
+        private final long loadMs;
+        private final long computeMs;
+
+        Result(TallyEngine.Snapshot candidates, int ballotCount, int maxRank, long[] histogram,
+               double[] scores, long loadMs, long computeMs) {
+            this.candidates = candidates;
+            this.ballotCount = ballotCount;
+            this.maxRank = maxRank;
+            this.histogram = histogram;
+            this.scores = scores;
+            this.loadMs = loadMs;
+            this.computeMs = computeMs;
+        }
+
+        public int getCandidateCount() {
+            return candidates.size();
+        }
+
+        public String getName(int candidate) {
+            return candidates.getName(candidate);
+        }
+
+        public String getList(int candidate) {
+            return candidates.getList(candidate);
+        }
+
+        public double getScore(int candidate) {
+            return scores[candidate];
+        }
+
+        // Number of ballots ranking the candidate at the given 1-based rank
+        public long getRankCount(int candidate, int rank) {
+            return histogram[candidate * maxRank + rank - 1];
+        }
+
+        public int getBallotCount() {
+            return ballotCount;
+        }
+
+        public int getMaxRank() {
+            return maxRank;
+        }
+
+        // Time spent streaming selections out of the database
+        public long getLoadMs() {
+            return loadMs;
+        }
+
+        // Time spent on the parallel histogram pass and weighting
+        public long getComputeMs() {
+            return computeMs;
+        }
+    }
+
+    /**
+     * Every ballot as a run of (candidate index, rank) pairs. Candidate
+     * indexes refer to positions in the tally snapshot used to load them.
+     */
+    static final class CompactBallots {
+        final int candidateCount;
+        final int[] candidates;
+        final int[] ranks;
+        // Ballot b covers picks offsets[b] until offsets[b + 1]
+        final int[] offsets;
+        final int ballotCount;
+        final int maxRank;
+
+        CompactBallots(int candidateCount, int[] candidates, int[] ranks, int[] offsets,
+                       int ballotCount, int maxRank) {
+            this.candidateCount = candidateCount;
+            this.candidates = candidates;
+            this.ranks = ranks;
+            this.offsets = offsets;
+            this.ballotCount = ballotCount;
+            this.maxRank = maxRank;
+        }
+
+        static CompactBallots load(DatabaseService databaseService, TallyEngine.Snapshot snapshot)
+                throws SQLException {
+            int largestId = 0;
+            for (int i = 0; i < snapshot.size(); i++) {
+                largestId = Math.max(largestId, snapshot.getCandidateId(i));
+            }
+            int maxId = largestId;
+            int[] indexById = new int[maxId + 1];
+            Arrays.fill(indexById, -1);
+            for (int i = 0; i < snapshot.size(); i++) {
+                indexById[snapshot.getCandidateId(i)] = i;
+            }
+
+            Builder builder = new Builder();
+            databaseService.streamSelections((sessionId, candidateId, selectionOrder) -> {
+                // Candidates replaced since the snapshot was taken are skipped
+                int index = candidateId <= maxId ? indexById[candidateId] : -1;
+                if (index >= 0 && selectionOrder > 0) {
+                    builder.add(sessionId, index, selectionOrder);
+                }
+            });
+            return builder.build(snapshot.size());
+        }
+
+        long[] rankHistogram() {
+            if (ballotCount == 0) {
+                return new long[candidateCount * maxRank];
+            }
+            return ForkJoinPool.commonPool().invoke(new HistogramTask(this, 0, ballotCount));
+        }
+
+        private static final class Builder {
+            private int[] candidates = new int[1024];
+            private int[] ranks = new int[1024];
+            private int[] offsets = new int[256];
+            private int picks;
+            private int ballots;
+            private int maxRank;
+            private String currentSession;
+
+            void add(String sessionId, int candidate, int rank) {
+                if (!sessionId.equals(currentSession)) {
+                    currentSession = sessionId;
+                    if (ballots + 1 >= offsets.length) {
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    }
+                    offsets[ballots++] = picks;
+                }
+                if (picks == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, picks * 2);
+                    ranks = Arrays.copyOf(ranks, picks * 2);
+                }
+                candidates[picks] = candidate;
+                ranks[picks] = rank;
+                picks++;
+                maxRank = Math.max(maxRank, rank);
+            }
+
+            CompactBallots build(int candidateCount) {
+                offsets[ballots] = picks;
+                return new CompactBallots(candidateCount, candidates, ranks, offsets, ballots, Math.max(maxRank, 1));
+            }
+        }
+    }
+
+    // Candidate x rank counts for a range of ballots, split in half until small enough
+    private static final class HistogramTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final CompactBallots ballots;
+        private final int from;
+        private final int to;
+
+        HistogramTask(CompactBallots ballots, int from, int to) {
+            this.ballots = ballots;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                int maxRank = ballots.maxRank;
+                long[] histogram = new long[ballots.candidateCount * maxRank];
+                for (int pick = ballots.offsets[from], end = ballots.offsets[to]; pick < end; pick++) {
+                    histogram[ballots.candidates[pick] * maxRank + ballots.ranks[pick] - 1]++;
+                }
+                return histogram;
+            }
+
+            int middle = (from + to) >>> 1;
+            HistogramTask left = new HistogramTask(ballots, from, middle);
+            left.fork();
+            long[] right = new HistogramTask(ballots, middle, to).compute();
+            long[] merged = left.join();
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] += right[i];
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.election.service;
+
+import com.election.model.Candidate;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory selection counts per candidate, kept in step with the database by
+ * {@link DatabaseService} after every committed save, delete or clear.
+ *
+ * Counts live in primitive arrays indexed by candidate id. Updates only ever
+ * come from the single database writer, so they take the write lock briefly;
+ * readers take an optimistic stamp, copy the arrays and validate, which means
+ * dashboards polling {@link #snapshot()} neither block each other nor touch
+ * the database, and always see the tallies as of one committed transaction.
+ */
+public class TallyEngine {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private String[] lists = new String[INITIAL_CAPACITY];
+    private int maxId = -1;
+    private long total;
+    private long version;
+
+    /**
+     * Tallies as of one committed transaction. Indexes run over the known
+     * candidates in id order.
+     */
+    public static final class Snapshot {
+        private final int[] candidateIds;
+        private final String[] names;
+        private final String[] lists;
+        private final long[] counts;
+        private final long total;
+        private final long version;
+
+        private Snapshot(int[] candidateIds, String[] names, String[] lists, long[] counts,
+                         long total, long version) {
+            this.candidateIds = candidateIds;
+            this.names = names;
+            this.lists = lists;
+            this.counts = counts;
+            this.total = total;
+            this.version = version;
+        }
+
+        public int size() {
+            return candidateIds.length;
+        }
+
+        public int getCandidateId(int i) {
+            return candidateIds[i];
+        }
+
+        public String getName(int i) {
+            return names[i];
+        }
+
+        public String getList(int i) {
+            return lists[i];
+        }
+
+        public long getCount(int i) {
+            return counts[i];
+        }
+
+        // Sum of all counts
+        public long getTotal() {
+            return total;
+        }
+
+        // DatabaseService data version of the last change applied
+        public long getVersion() {
+            return version;
+        }
+
+        // Same shape as DatabaseService.getCandidateStats: "list: name" -> count
+        public Map<String, Integer> toStatsMap() {
+            Map<String, Integer> stats = new HashMap<>();
+            for (int i = 0; i < candidateIds.length; i++) {
+                stats.put(lists[i] + ": " + names[i], (int) counts[i]);
+            }
+            return stats;
+        }
+    }
+
+    public Snapshot snapshot() {
+        long stamp = lock.tryOptimisticRead();
+        Snapshot snapshot = copy();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                snapshot = copy();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return snapshot;
+    }
+
+    // Fields are read without a lock here; the caller validates the stamp
+    private Snapshot copy() {
+        long[] countsRef = counts;
+        String[] namesRef = names;
+        String[] listsRef = lists;
+        // A concurrent resize can hand us arrays of different lengths; validate() rejects the copy then
+        int max = Math.min(maxId, Math.min(countsRef.length, Math.min(namesRef.length, listsRef.length)) - 1);
+
+        int size = 0;
+        for (int id = 0; id <= max; id++) {
+            if (namesRef[id] != null) {
+                size++;
+            }
+        }
+
+        int[] ids = new int[size];
+        String[] snapshotNames = new String[size];
+        String[] snapshotLists = new String[size];
+        long[] snapshotCounts = new long[size];
+        int i = 0;
+        for (int id = 0; id <= max && i < size; id++) {
+            if (namesRef[id] != null) {
+                ids[i] = id;
+                snapshotNames[i] = namesRef[id];
+                snapshotLists[i] = listsRef[id];
+                snapshotCounts[i] = countsRef[id];
+                i++;
+            }
+        }
+        return new Snapshot(ids, snapshotNames, snapshotLists, snapshotCounts, total, version);
+    }
+
+    public long getCount(int candidateId) {
+        long stamp = lock.tryOptimisticRead();
+        long[] countsRef = counts;
+        long count = candidateId < countsRef.length ? countsRef[candidateId] : 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = candidateId < counts.length ? counts[candidateId] : 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    /** Replaces all state with the given candidates, e.g. when seeding from the database. */
+    void seed(Map<Integer, Candidate> candidates, Map<Integer, Long> seedCounts, long dataVersion) {
+        long stamp = lock.writeLock();
+        try {
+            int capacity = INITIAL_CAPACITY;
+            for (int id : candidates.keySet()) {
+                capacity = Math.max(capacity, id + 1);
+            }
+            counts = new long[capacity];
+            names = new String[capacity];
+            lists = new String[capacity];
+            maxId = -1;
+            total = 0;
+
+            for (Map.Entry<Integer, Candidate> candidate : candidates.entrySet()) {
+                int id = candidate.getKey();
+                lists[id] = candidate.getValue().getList();
+                names[id] = candidate.getValue().getName();
+                counts[id] = seedCounts.getOrDefault(id, 0L);
+                total += counts[id];
+                maxId = Math.max(maxId, id);
+            }
+            version = dataVersion;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Applies one committed transaction: candidates it created or removed, the
+     * count change per candidate id and the data version it produced.
+     */
+    void apply(Map<Integer, Candidate> added, Iterable<Integer> removed, Map<Integer, Integer> deltas,
+               long dataVersion) {
+        long stamp = lock.writeLock();
+        try {
+            for (int id : removed) {
+                if (id <= maxId && names[id] != null) {
+                    total -= counts[id];
+                    counts[id] = 0;
+                    names[id] = null;
+                    lists[id] = null;
+                }
+            }
+            for (Map.Entry<Integer, Candidate> candidate : added.entrySet()) {
+                int id = candidate.getKey();
+                ensureCapacity(id);
+                lists[id] = candidate.getValue().getList();
+                names[id] = candidate.getValue().getName();
+                maxId = Math.max(maxId, id);
+            }
+            for (Map.Entry<Integer, Integer> delta : deltas.entrySet()) {
+                int id = delta.getKey();
+                ensureCapacity(id);
+                counts[id] += delta.getValue();
+                total += delta.getValue();
+            }
+            version = dataVersion;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Overwrites individual counts, used after reconciling drift
+    void set(Map<Integer, Integer> newCounts, long dataVersion) {
+        long stamp = lock.writeLock();
+        try {
+            for (Map.Entry<Integer, Integer> count : newCounts.entrySet()) {
+                int id = count.getKey();
+                ensureCapacity(id);
+                total += count.getValue() - counts[id];
+                counts[id] = count.getValue();
+            }
+            version = dataVersion;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void reset(long dataVersion) {
+        long stamp = lock.writeLock();
+        try {
+            Arrays.fill(counts, 0);
+            total = 0;
+            version = dataVersion;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Caller holds the write lock. Arrays are replaced, never resized in place,
+    // so an optimistic reader holding the old references stays in bounds
+    private void ensureCapacity(int id) {
+        if (id < counts.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, counts.length * 2);
+        counts = Arrays.copyOf(counts, capacity);
+        names = Arrays.copyOf(names, capacity);
+        lists = Arrays.copyOf(lists, capacity);
+    }
+}
@@ -0,0 +1,363 @@
+package com.election.ui;
+
+import com.election.model.Candidate;
+import com.election.model.CandidateRoster;
+import com.election.model.RankedSelection;
+import com.election.service.LoggingService;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableIntegerValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SplitPane;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.TransferMode;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * The ballot: every candidate list from the roster, with the voter's ranked
+ * selection on top.
+ *
+ * A few lists are shown side by side; more than that switches to a list of
+ * lists next to one candidate view. List views are virtualized, so thousands
+ * of candidates cost no more to show than a screenful.
+ *
+ * The selection is kept as its own RankedSelection, so selecting, deselecting,
+ * moving a choice to another rank, resetting and saving only touch the
+ * selected candidates instead of scanning the roster. A selected candidate can
+ * be dragged onto another selected one to take its rank. Cells observe the
+ * selection order of the candidate they show, so a change repaints only the
+ * cells whose order actually changed; the list views are never refreshed as a
+ * whole.
+ */
+public class BallotPane extends StackPane {
+    // More lists than this get the list-of-lists layout
+    private static final int SIDE_BY_SIDE_LIMIT = 3;
+
+    private final LoggingService loggingService = LoggingService.getInstance();
+    private final ReadOnlyIntegerWrapper selectionCount = new ReadOnlyIntegerWrapper();
+    private final ReadOnlyIntegerWrapper maxSelections = new ReadOnlyIntegerWrapper();
+
+    private CandidateRoster roster;
+    private final Map<String, ObservableList<Candidate>> listItems = new LinkedHashMap<>();
+    private final RankedSelection<Candidate> selected = new RankedSelection<>();
+    // Observable orders for the candidates cells have shown, created on first use
+    private final Map<Candidate, IntegerProperty> orderProperties = new IdentityHashMap<>();
+    private final Map<String, IntegerProperty> selectedPerList = new HashMap<>();
+    private IntConsumer onLimitReached = limit -> { };
+    // The selected candidate being dragged to a new rank
+    private Candidate dragged;
+
+    public BallotPane(CandidateRoster roster) {
+        setRoster(roster);
+    }
+
+    public ReadOnlyIntegerProperty selectionCountProperty() {
+        return selectionCount.getReadOnlyProperty();
+    }
+
+    public ReadOnlyIntegerProperty maxSelectionsProperty() {
+        return maxSelections.getReadOnlyProperty();
+    }
+
+    public int getSelectionCount() {
+        return selected.size();
+    }
+
+    public CandidateRoster getRoster() {
+        return roster;
+    }
+
+    // Called with the limit when a click would select one candidate too many
+    public void setOnLimitReached(IntConsumer handler) {
+        this.onLimitReached = handler;
+    }
+
+    // The selected candidates in ranked order; the list is a copy
+    public List<Candidate> getSelectedCandidates() {
+        return selected.toList();
+    }
+
+    // The candidate's rank in the selection, or 0 if it is not selected
+    public int getSelectionOrder(Candidate candidate) {
+        return selected.rankOf(candidate);
+    }
+
+    public List<Candidate> getCandidates(String listName) {
+        ObservableList<Candidate> items = listItems.get(listName);
+        return items != null ? Collections.unmodifiableList(items) : Collections.emptyList();
+    }
+
+    // The displayed candidate with this name on this list, or null
+    public Candidate findCandidate(String listName, String name) {
+        int index = roster.indexOf(listName, name);
+        return index < 0 ? null : listItems.get(listName).get(index);
+    }
+
+    // Selection order of a displayed candidate, 0 while it is not selected
+    public ObservableIntegerValue selectionOrderProperty(Candidate candidate) {
+        return orderProperties.computeIfAbsent(candidate,
+                key -> new SimpleIntegerProperty(selected.rankOf(key)));
+    }
+
+    // Number of selected candidates on a list
+    public ObservableIntegerValue selectedCountProperty(String listName) {
+        return selectedPerList.computeIfAbsent(listName, key -> new SimpleIntegerProperty());
+    }
+
+    /**
+     * Shows a new roster. Candidates that are still on it stay selected in
+     * the same order; the rest are dropped from the selection.
+     */
+    public void setRoster(CandidateRoster newRoster) {
+        List<Candidate> previous = selected.toList();
+        roster = newRoster;
+        listItems.clear();
+        orderProperties.clear();
+        selectedPerList.clear();
+        for (String listName : newRoster.getListNames()) {
+            listItems.put(listName, FXCollections.observableArrayList(newRoster.getCandidates(listName)));
+        }
+
+        selected.clear();
+        for (Candidate old : previous) {
+            Candidate current = findCandidate(old.getList(), old.getName());
+            if (current != null && selected.size() < newRoster.getMaxSelections()) {
+                addSelected(current);
+            }
+        }
+        maxSelections.set(newRoster.getMaxSelections());
+        selectionCount.set(selected.size());
+        buildLayout();
+    }
+
+    /**
+     * Selects the candidate at the next rank, or deselects it and moves the
+     * candidates ranked after it up one. Returns false when selecting would
+     * go over the limit.
+     */
+    public boolean toggle(Candidate candidate) {
+        int currentOrder = selected.rankOf(candidate);
+        if (currentOrder > 0) {
+            loggingService.logDeselection(candidate.getName(), candidate.getList());
+            selected.remove(candidate);
+            setOrder(candidate, 0);
+            adjustListCount(candidate.getList(), -1);
+
+            // Only the candidates ranked after it change
+            selected.forEachRanked(currentOrder, selected.size(), this::setOrder);
+        } else {
+            if (selected.size() >= maxSelections.get()) {
+                onLimitReached.accept(maxSelections.get());
+                return false;
+            }
+            addSelected(candidate);
+            loggingService.logSelection(candidate.getName(), candidate.getList(), selected.size());
+        }
+
+        selectionCount.set(selected.size());
+        return true;
+    }
+
+    /**
+     * Moves a selected candidate to another rank, shifting the ones in
+     * between. Returns false if the candidate is not selected.
+     */
+    public boolean moveSelection(Candidate candidate, int rank) {
+        int newRank = Math.max(1, Math.min(rank, selected.size()));
+        int oldRank = selected.move(candidate, newRank);
+        if (oldRank == 0) {
+            return false;
+        }
+        loggingService.log(String.format("Moved: %s from list %s from order %d to %d",
+                candidate.getName(), candidate.getList(), oldRank, newRank));
+        selected.forEachRanked(Math.min(oldRank, newRank), Math.max(oldRank, newRank), this::setOrder);
+        return true;
+    }
+
+    // Clears the selection, touching only the selected candidates
+    public void clearSelection() {
+        for (Candidate candidate : selected) {
+            setOrder(candidate, 0);
+            adjustListCount(candidate.getList(), -1);
+        }
+        selected.clear();
+        selectionCount.set(0);
+    }
+
+    private void addSelected(Candidate candidate) {
+        selected.add(candidate);
+        setOrder(candidate, selected.size());
+        adjustListCount(candidate.getList(), 1);
+    }
+
+    private void setOrder(Candidate candidate, int order) {
+        candidate.setSelectionOrder(order);
+        IntegerProperty property = orderProperties.get(candidate);
+        if (property != null) {
+            property.set(order);
+        }
+    }
+
+    private void adjustListCount(String listName, int delta) {
+        IntegerProperty count = selectedPerList.computeIfAbsent(listName, key -> new SimpleIntegerProperty());
+        count.set(count.get() + delta);
+    }
+
+    private void buildLayout() {
+        if (listItems.size() <= SIDE_BY_SIDE_LIMIT) {
+            getChildren().setAll(sideBySide());
+        } else {
+            getChildren().setAll(listOfLists());
+        }
+    }
+
+    private GridPane sideBySide() {
+        GridPane listsGrid = new GridPane();
+        listsGrid.setHgap(20);
+        listsGrid.setPadding(new Insets(10));
+
+        int column = 0;
+        for (Map.Entry<String, ObservableList<Candidate>> entry : listItems.entrySet()) {
+            ListView<Candidate> listView = createCandidateListView(entry.getValue());
+
+            VBox listBox = new VBox(10, createTitle(CandidateRoster.titleOf(entry.getKey())), listView);
+            listBox.setAlignment(Pos.TOP_CENTER);
+            GridPane.setHgrow(listBox, Priority.ALWAYS);
+            GridPane.setVgrow(listBox, Priority.ALWAYS);
+            listsGrid.add(listBox, column++, 0);
+        }
+        return listsGrid;
+    }
+
+    private SplitPane listOfLists() {
+        ListView<Candidate> candidateView = createCandidateListView(FXCollections.observableArrayList());
+        Label listTitle = createTitle("");
+        VBox candidateBox = new VBox(10, listTitle, candidateView);
+        candidateBox.setAlignment(Pos.TOP_CENTER);
+        candidateBox.setPadding(new Insets(10));
+
+        ListView<String> listNamesView = new ListView<>(FXCollections.observableArrayList(listItems.keySet()));
+        listNamesView.setCellFactory(param -> new ListNameCell());
+        listNamesView.getSelectionModel().selectedItemProperty().addListener((obs, old, listName) -> {
+            if (listName != null) {
+                listTitle.setText(CandidateRoster.titleOf(listName));
+                candidateView.setItems(listItems.get(listName));
+                candidateView.scrollTo(0);
+            }
+        });
+        listNamesView.getSelectionModel().selectFirst();
+
+        SplitPane split = new SplitPane(listNamesView, candidateBox);
+        split.setDividerPositions(0.3);
+        return split;
+    }
+
+    private Label createTitle(String text) {
+        Label title = new Label(text);
+        title.setFont(Font.font("System", FontWeight.BOLD, 18));
+        return title;
+    }
+
+    private ListView<Candidate> createCandidateListView(ObservableList<Candidate> candidates) {
+        ListView<Candidate> listView = new ListView<>(candidates);
+        listView.setCellFactory(param -> {
+            CandidateCell cell = new CandidateCell(this::selectionOrderProperty);
+            enableRankDragging(cell);
+            return cell;
+        });
+        listView.setPrefHeight(400);
+
+        // Handle selection
+        listView.setOnMouseClicked(e -> {
+            // The end of a drag is not a click
+            if (!e.isStillSincePress()) {
+                return;
+            }
+            Candidate selectedCandidate = listView.getSelectionModel().getSelectedItem();
+            if (selectedCandidate != null) {
+                toggle(selectedCandidate);
+            }
+        });
+
+        return listView;
+    }
+
+    // Dropping a selected candidate on another selected one gives it that rank
+    private void enableRankDragging(CandidateCell cell) {
+        cell.setOnDragDetected(e -> {
+            Candidate candidate = cell.getItem();
+            if (candidate != null && selected.contains(candidate)) {
+                dragged = candidate;
+                ClipboardContent content = new ClipboardContent();
+                content.putString(candidate.getName());
+                cell.startDragAndDrop(TransferMode.MOVE).setContent(content);
+                e.consume();
+            }
+        });
+        cell.setOnDragOver(e -> {
+            Candidate target = cell.getItem();
+            if (dragged != null && target != null && target != dragged && selected.contains(target)) {
+                e.acceptTransferModes(TransferMode.MOVE);
+            }
+            e.consume();
+        });
+        cell.setOnDragDropped(e -> {
+            Candidate target = cell.getItem();
+            boolean moved = dragged != null && target != null && moveSelection(dragged, selected.rankOf(target));
+            e.setDropCompleted(moved);
+            e.consume();
+        });
+        cell.setOnDragDone(e -> dragged = null);
+    }
+
+    // A list's title and size, plus how many of its candidates are selected
+    private class ListNameCell extends ListCell<String> {
+        private ObservableIntegerValue observedCount;
+        private final ChangeListener<Number> countListener = (obs, oldCount, newCount) -> showCount();
+
+        @Override
+        protected void updateItem(String listName, boolean empty) {
+            super.updateItem(listName, empty);
+            if (observedCount != null) {
+                observedCount.removeListener(countListener);
+                observedCount = null;
+            }
+            if (empty || listName == null) {
+                setText(null);
+            } else {
+                observedCount = selectedCountProperty(listName);
+                observedCount.addListener(countListener);
+                showCount();
+            }
+        }
+
+        private void showCount() {
+            String listName = getItem();
+            int count = observedCount.get();
+            String title = CandidateRoster.titleOf(listName) + " (" + listItems.get(listName).size() + ")";
+            setText(count > 0 ? title + " - " + count + " selected" : title);
+        }
+    }
+}
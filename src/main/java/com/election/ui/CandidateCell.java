@@ -1,6 +1,8 @@
 package com.election.ui;
 
 import com.election.model.Candidate;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableIntegerValue;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
@@ -14,6 +16,8 @@ import javafx.scene.shape.Circle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 
+import java.util.function.Function;
+
 public class CandidateCell extends ListCell<Candidate> {
     
     private HBox content;
@@ -22,7 +26,14 @@ public class CandidateCell extends ListCell<Candidate> {
     private Label selectionOrderLabel;
     private Circle circle;
     
-    public CandidateCell() {
+    // Selection order of the candidate shown, observed so only changed cells repaint
+    private final Function<Candidate, ObservableIntegerValue> selectionOrders;
+    private ObservableIntegerValue observedOrder;
+    private final ChangeListener<Number> orderListener = (obs, oldOrder, newOrder) -> showOrder(newOrder.intValue());
+    
+    public CandidateCell(Function<Candidate, ObservableIntegerValue> selectionOrders) {
+        this.selectionOrders = selectionOrders;
+        
         // Create UI components
         nameLabel = new Label();
         nameLabel.setFont(Font.font("System", FontWeight.NORMAL, 14));
@@ -52,21 +63,33 @@ public class CandidateCell extends ListCell<Candidate> {
     protected void updateItem(Candidate candidate, boolean empty) {
         super.updateItem(candidate, empty);
         
+        // Cells are reused for other candidates while scrolling
+        if (observedOrder != null) {
+            observedOrder.removeListener(orderListener);
+            observedOrder = null;
+        }
+        
         if (empty || candidate == null) {
             setGraphic(null);
         } else {
             nameLabel.setText(candidate.getName());
             
-            int selectionOrder = candidate.getSelectionOrder();
-            if (selectionOrder > 0) {
-                circle.setFill(Color.DODGERBLUE);
-                selectionOrderLabel.setText(String.valueOf(selectionOrder));
-            } else {
-                circle.setFill(Color.LIGHTGRAY);
-                selectionOrderLabel.setText("");
-            }
+            observedOrder = selectionOrders.apply(candidate);
+            observedOrder.addListener(orderListener);
+            showOrder(observedOrder.get());
             
             setGraphic(content);
         }
     }
+    
+    // Repaints only the indicator when this candidate's order changes
+    private void showOrder(int selectionOrder) {
+        if (selectionOrder > 0) {
+            circle.setFill(Color.DODGERBLUE);
+            selectionOrderLabel.setText(String.valueOf(selectionOrder));
+        } else {
+            circle.setFill(Color.LIGHTGRAY);
+            selectionOrderLabel.setText("");
+        }
+    }
 } 
\ No newline at end of file
@@ -1,10 +1,22 @@
 package com.election.ui;
 
+import com.election.model.Candidate;
+import com.election.model.SessionPage;
 import com.election.service.DatabaseService;
 import com.election.service.LoggingService;
+import com.election.service.MetricsRegistry;
 import com.election.service.PdfService;
+import com.election.service.ReportExportService;
+import com.election.service.ScoringService;
+import javafx.application.Platform;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
@@ -14,17 +26,100 @@ import javafx.stage.Modality;
 import javafx.stage.Window;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * Statistics and data management.
+ *
+ * Tabs backed by database queries are filled in the first time they are
+ * selected, on a background thread, with a placeholder until the data
+ * arrives, so the dialog opens at once however large the database is.
+ * Query results are kept across dialogs until the saved data changes.
+ *
+ * While the dialog is open, saves, deletes and clears reported by
+ * DatabaseService are applied to the loaded tabs in place: counts move,
+ * session rows come and go, and nothing is queried again.
+ */
 public class StatsDialog extends Dialog<Void> {
     
+    private static final int SESSION_PAGE_SIZE = 50;
+    private static final int PATTERN_LIMIT = 100;
+    private static final MetricsRegistry.Timer FIRST_PAINT_TIMER =
+            MetricsRegistry.getInstance().timer("ui.statsDialog.firstPaint");
+    private static final MetricsRegistry.Timer TAB_LOAD_TIMER =
+            MetricsRegistry.getInstance().timer("ui.statsDialog.tabLoad");
+    
+    // Tab title -> last query result and the data version it was read at, shared by all dialogs
+    private static final Map<String, DatabaseService.VersionedResult<?>> RESULT_CACHE = new ConcurrentHashMap<>();
+    
+    // Key in a tab content's properties for the listener that keeps it current
+    private static final String LIVE_UPDATES = "stats.liveUpdates";
+    
+    // A reported change to the saved data and the data version it produced
+    private static class DataChange {
+        final long version;
+        final Consumer<DatabaseService.DataListener> apply;
+        
+        DataChange(long version, Consumer<DatabaseService.DataListener> apply) {
+            this.version = version;
+            this.apply = apply;
+        }
+    }
+    
     private final DatabaseService databaseService;
     private final LoggingService loggingService;
     private final PdfService pdfService;
+    // How to load each query-backed tab, and the tabs whose first load has started
+    private final Map<Tab, Runnable> tabLoaders = new LinkedHashMap<>();
+    private final Set<Tab> startedTabs = new HashSet<>();
+    // Tab loads in flight with the changes reported while they ran, and the
+    // data version each loaded tab shows
+    private final Map<Tab, List<DataChange>> changesWhileLoading = new HashMap<>();
+    private final Map<Tab, Long> loadedVersions = new HashMap<>();
+    // Running loads to cancel when the dialog closes
+    private final List<Task<?>> backgroundLoads = new ArrayList<>();
+    private Tab rankedScoresTab;
+    private final DatabaseService.DataListener dataListener = new DatabaseService.DataListener() {
+        @Override
+        public void sessionsSaved(long version, List<Map<String, Object>> sessions) {
+            report(new DataChange(version, live -> live.sessionsSaved(version, sessions)));
+        }
+        
+        @Override
+        public void sessionDeleted(long version, Map<String, Object> session) {
+            report(new DataChange(version, live -> live.sessionDeleted(version, session)));
+        }
+        
+        @Override
+        public void selectionsCleared(long version) {
+            report(new DataChange(version, live -> live.selectionsCleared(version)));
+        }
+        
+        @Override
+        public void countsReconciled(long version, Map<String, Integer> counts) {
+            report(new DataChange(version, live -> live.countsReconciled(version, counts)));
+        }
+        
+        private void report(DataChange change) {
+            Platform.runLater(() -> applyDataChange(change));
+        }
+    };
     
     public StatsDialog(Window owner) {
+        long openedAt = System.nanoTime();
         databaseService = DatabaseService.getInstance();
         loggingService = LoggingService.getInstance();
         pdfService = PdfService.getInstance();
@@ -44,13 +139,24 @@ public class StatsDialog extends Dialog<Void> {
         TabPane tabPane = new TabPane();
         tabPane.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
         
-        // Create tabs
-        Tab candidateStatsTab = createCandidateStatsTab();
-        Tab savedListsTab = createSavedListsTab();
-        Tab identicalBatchesTab = createIdenticalBatchesTab();
+        // Create tabs, the ones showing saved data load when first selected
+        databaseService.addDataListener(dataListener);
+        Tab candidateStatsTab = createLazyTab("Candidate Statistics",
+                databaseService::getVersionedCandidateStats, this::createCandidateStatsContent);
+        Tab savedListsTab = createLazyTab("Saved Lists History",
+                () -> databaseService.readVersioned(() -> databaseService.getSavedSessionsPage(null, SESSION_PAGE_SIZE)),
+                this::createSavedListsContent);
+        Tab identicalBatchesTab = createLazyTab("Selection Patterns",
+                () -> databaseService.readVersioned(() -> databaseService.getIdenticalSelectionBatches(PATTERN_LIMIT)),
+                this::createIdenticalBatchesContent);
+        rankedScoresTab = createLazyTab("Ranked Scores",
+                () -> databaseService.readVersioned(() -> new ScoringService(databaseService).score(null)),
+                this::createRankedScoresContent);
         Tab dataManagementTab = createDataManagementTab(); // New tab
         
-        tabPane.getTabs().addAll(candidateStatsTab, savedListsTab, identicalBatchesTab, dataManagementTab);
+        tabPane.getTabs().addAll(candidateStatsTab, savedListsTab, identicalBatchesTab, 
+                rankedScoresTab, dataManagementTab);
+        loadTab(tabPane.getSelectionModel().getSelectedItem());
         
         // Add close button
         ButtonType closeButton = new ButtonType("Close", ButtonBar.ButtonData.OK_DONE);
@@ -58,43 +164,224 @@ public class StatsDialog extends Dialog<Void> {
         
         // Set content
         getDialogPane().setContent(tabPane);
+        
+        setOnShown(e -> {
+            FIRST_PAINT_TIMER.stop(openedAt);
+            loggingService.log(String.format("Statistics dialog shown in %d ms",
+                    (System.nanoTime() - openedAt) / 1_000_000));
+        });
+        // Results nobody will see are not worth finishing
+        setOnHidden(e -> {
+            databaseService.removeDataListener(dataListener);
+            new ArrayList<>(backgroundLoads).forEach(load -> load.cancel(true));
+        });
+    }
+    
+    /**
+     * A tab that runs its query on a background thread the first time it is
+     * selected and shows a placeholder until the result is in. The result is
+     * reused while DatabaseService.getDataVersion() stays the same.
+     */
+    private <T> Tab createLazyTab(String title, Callable<DatabaseService.VersionedResult<T>> query,
+                                  Function<T, Node> view) {
+        Tab tab = new Tab(title);
+        tab.setContent(createLoadingPlaceholder());
+        tabLoaders.put(tab, () -> startLoad(tab, query, view));
+        tab.setOnSelectionChanged(e -> {
+            if (tab.isSelected()) {
+                loadTab(tab);
+            }
+        });
+        return tab;
+    }
+    
+    private void loadTab(Tab tab) {
+        if (tabLoaders.containsKey(tab) && startedTabs.add(tab)) {
+            tabLoaders.get(tab).run();
+        }
+    }
+    
+    private void reloadTab(Tab tab) {
+        tab.setContent(createLoadingPlaceholder());
+        tabLoaders.get(tab).run();
+    }
+    
+    /**
+     * Applies a data change to every loaded tab that does not show it yet.
+     * A tab whose query is still running gets the change once the result is
+     * in, if the result turns out to predate it; tabs not loaded yet will read
+     * the new data anyway.
+     */
+    private void applyDataChange(DataChange change) {
+        for (Tab tab : tabLoaders.keySet()) {
+            List<DataChange> pending = changesWhileLoading.get(tab);
+            if (pending != null) {
+                pending.add(change);
+            } else {
+                applyToTab(tab, change);
+            }
+        }
     }
     
-    private Tab createCandidateStatsTab() {
-        Tab tab = new Tab("Candidate Statistics");
+    private void applyToTab(Tab tab, DataChange change) {
+        Long loadedVersion = loadedVersions.get(tab);
+        if (loadedVersion == null || change.version <= loadedVersion) {
+            return;
+        }
+        loadedVersions.put(tab, change.version);
+        Object live = tab.getContent().getProperties().get(LIVE_UPDATES);
+        if (live instanceof DatabaseService.DataListener) {
+            change.apply.accept((DatabaseService.DataListener) live);
+        }
+    }
+    
+    private <T> void startLoad(Tab tab, Callable<DatabaseService.VersionedResult<T>> query, Function<T, Node> view) {
+        String title = tab.getText();
+        long start = System.nanoTime();
+        Task<DatabaseService.VersionedResult<T>> load = new Task<DatabaseService.VersionedResult<T>>() {
+            @Override
+            protected DatabaseService.VersionedResult<T> call() throws Exception {
+                return cachedQuery(title, query);
+            }
+        };
+        load.setOnSucceeded(e -> {
+            DatabaseService.VersionedResult<T> result = load.getValue();
+            tab.setContent(view.apply(result.getValue()));
+            loadedVersions.put(tab, result.getDataVersion());
+            // Changes the result already shows are skipped by their version
+            for (DataChange change : changesWhileLoading.remove(tab)) {
+                applyToTab(tab, change);
+            }
+            TAB_LOAD_TIMER.stop(start);
+            loggingService.log(String.format("Statistics tab %s loaded in %d ms",
+                    title, (System.nanoTime() - start) / 1_000_000));
+        });
+        load.setOnFailed(e -> {
+            changesWhileLoading.remove(tab);
+            loadedVersions.remove(tab);
+            Throwable error = load.getException();
+            loggingService.logError(title, asException(error));
+            Label errorLabel = new Label("Could not load " + title.toLowerCase() + ": " + error.getMessage());
+            errorLabel.setWrapText(true);
+            VBox content = new VBox(10, errorLabel);
+            content.setPadding(new Insets(10));
+            tab.setContent(content);
+        });
+        loadedVersions.remove(tab);
+        changesWhileLoading.put(tab, new ArrayList<>());
+        runInBackground(load, "stats-tab-loader");
+    }
+    
+    // Runs a load on a daemon thread; it is cancelled if the dialog closes first
+    private void runInBackground(Task<?> load, String threadName) {
+        backgroundLoads.add(load);
+        load.runningProperty().addListener((obs, wasRunning, running) -> {
+            if (!running) {
+                backgroundLoads.remove(load);
+            }
+        });
         
-        // Load statistics data
-        Map<String, Integer> stats = databaseService.getCandidateStats();
+        Thread worker = new Thread(load, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    /**
+     * Runs a change to the saved data on a daemon thread with the button
+     * disabled, then hands the result to {@code onDone} on the FX thread.
+     * Unlike loads it is not cancelled when the dialog closes.
+     */
+    private <T> void runDataChange(Button button, Callable<T> change, String name, Consumer<T> onDone) {
+        Task<T> task = new Task<T>() {
+            @Override
+            protected T call() throws Exception {
+                return change.call();
+            }
+        };
+        button.setDisable(true);
+        task.setOnSucceeded(e -> {
+            button.setDisable(false);
+            onDone.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            button.setDisable(false);
+            loggingService.logError(name, asException(task.getException()));
+            showErrorDialog("Error", "Could not " + name + ": " + task.getException().getMessage());
+        });
+        
+        Thread worker = new Thread(task, "stats-data-change");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    private static Exception asException(Throwable error) {
+        return error instanceof Exception ? (Exception) error : new Exception(error);
+    }
+    
+    // Results carry the version they show, so one reused just before a change still gets it applied
+    @SuppressWarnings("unchecked")
+    private <T> DatabaseService.VersionedResult<T> cachedQuery(String key,
+            Callable<DatabaseService.VersionedResult<T>> query) throws Exception {
+        DatabaseService.VersionedResult<?> cached = RESULT_CACHE.get(key);
+        if (cached != null && cached.getDataVersion() == databaseService.getDataVersion()) {
+            return (DatabaseService.VersionedResult<T>) cached;
+        }
+        DatabaseService.VersionedResult<T> result = query.call();
+        RESULT_CACHE.put(key, result);
+        return result;
+    }
+    
+    private VBox createLoadingPlaceholder() {
+        ProgressIndicator progress = new ProgressIndicator();
+        progress.setMaxSize(40, 40);
+        VBox placeholder = new VBox(10, progress, new Label("Loading..."));
+        placeholder.setAlignment(Pos.CENTER);
+        return placeholder;
+    }
+    
+    // One row of the candidate statistics table
+    private static class CandidateCount {
+        final String candidate;
+        final IntegerProperty count;
         
+        CandidateCount(String candidate, int count) {
+            this.candidate = candidate;
+            this.count = new SimpleIntegerProperty(count);
+        }
+    }
+    
+    private VBox createCandidateStatsContent(Map<String, Integer> stats) {
         // Create content
         VBox content = new VBox(10);
         content.setPadding(new Insets(10));
         
         // Create table view for stats
-        TableView<Map.Entry<String, Integer>> tableView = new TableView<>();
+        TableView<CandidateCount> tableView = new TableView<>();
         tableView.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
         
         // Define columns
-        TableColumn<Map.Entry<String, Integer>, String> candidateColumn = 
+        TableColumn<CandidateCount, String> candidateColumn = 
                 new TableColumn<>("Candidate");
         candidateColumn.setCellValueFactory(param -> 
                 javafx.beans.binding.Bindings.createStringBinding(
-                        () -> param.getValue().getKey()));
+                        () -> param.getValue().candidate));
         
-        TableColumn<Map.Entry<String, Integer>, Number> countColumn = 
+        TableColumn<CandidateCount, Number> countColumn = 
                 new TableColumn<>("Selection Count");
-        countColumn.setCellValueFactory(param -> 
-                javafx.beans.binding.Bindings.createIntegerBinding(
-                        () -> param.getValue().getValue()));
+        countColumn.setCellValueFactory(param -> param.getValue().count);
         countColumn.setStyle("-fx-alignment: CENTER-RIGHT;");
         
         // Add columns to table
         tableView.getColumns().add(candidateColumn);
         tableView.getColumns().add(countColumn);
         
-        // Add data to table
-        stats.entrySet().forEach(entry -> 
-                tableView.getItems().add(entry));
+        // Add data to table, keyed like getCandidateStats() for applying changes
+        Map<String, CandidateCount> rows = new HashMap<>();
+        stats.forEach((candidate, count) -> {
+            CandidateCount row = new CandidateCount(candidate, count);
+            rows.put(candidate, row);
+            tableView.getItems().add(row);
+        });
         
         // Sort by count descending
         tableView.getSortOrder().add(countColumn);
@@ -105,114 +392,274 @@ public class StatsDialog extends Dialog<Void> {
         content.getChildren().add(tableView);
         
         // Add summary stats
-        int totalSelections = stats.values().stream().mapToInt(Integer::intValue).sum();
-        Label summaryLabel = new Label("Total Selections: " + totalSelections);
+        IntegerProperty totalSelections = new SimpleIntegerProperty(
+                stats.values().stream().mapToInt(Integer::intValue).sum());
+        Label summaryLabel = new Label();
+        summaryLabel.textProperty().bind(totalSelections.asString("Total Selections: %d"));
         summaryLabel.setPadding(new Insets(10, 0, 0, 0));
         content.getChildren().add(summaryLabel);
         
-        tab.setContent(content);
-        return tab;
+        BiConsumer<List<Candidate>, Integer> adjust = (candidates, delta) -> {
+            for (Candidate candidate : candidates) {
+                String key = candidate.getList() + ": " + candidate.getName();
+                CandidateCount row = rows.get(key);
+                if (row == null) {
+                    row = new CandidateCount(key, 0);
+                    rows.put(key, row);
+                    tableView.getItems().add(row);
+                }
+                row.count.set(row.count.get() + delta);
+            }
+            totalSelections.set(totalSelections.get() + delta * candidates.size());
+            tableView.sort();
+        };
+        content.getProperties().put(LIVE_UPDATES, new DatabaseService.DataListener() {
+            @Override
+            public void sessionsSaved(long version, List<Map<String, Object>> sessions) {
+                for (Map<String, Object> session : sessions) {
+                    adjust.accept(candidatesOf(session), 1);
+                }
+            }
+            
+            @Override
+            public void sessionDeleted(long version, Map<String, Object> session) {
+                adjust.accept(candidatesOf(session), -1);
+            }
+            
+            @Override
+            public void selectionsCleared(long version) {
+                rows.values().forEach(row -> row.count.set(0));
+                totalSelections.set(0);
+            }
+            
+            @Override
+            public void countsReconciled(long version, Map<String, Integer> counts) {
+                rows.forEach((candidate, row) -> row.count.set(counts.getOrDefault(candidate, 0)));
+                totalSelections.set(counts.values().stream().mapToInt(Integer::intValue).sum());
+                tableView.sort();
+            }
+        });
+        
+        return content;
     }
     
-    private Tab createSavedListsTab() {
-        Tab tab = new Tab("Saved Lists History");
-        
-        // Load saved sessions
-        List<Map<String, Object>> sessions = databaseService.getSavedSessions();
-        
+    @SuppressWarnings("unchecked")
+    private static List<Candidate> candidatesOf(Map<String, Object> session) {
+        return (List<Candidate>) session.get("candidates");
+    }
+    
+    // Shows the first page of saved sessions, later pages are fetched on demand
+    private VBox createSavedListsContent(SessionPage firstPage) {
         VBox content = new VBox(10);
         content.setPadding(new Insets(10));
         
-        if (sessions.isEmpty()) {
-            Label noDataLabel = new Label("No saved lists found.");
-            noDataLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
-            content.getChildren().add(noDataLabel);
-        } else {
-            Label titleLabel = new Label("Saved Lists History");
-            titleLabel.setFont(Font.font("System", FontWeight.BOLD, 16));
-            content.getChildren().add(titleLabel);
+        Label titleLabel = new Label("Saved Lists History");
+        titleLabel.setFont(Font.font("System", FontWeight.BOLD, 16));
+        content.getChildren().add(titleLabel);
+        
+        Label shownLabel = new Label();
+        content.getChildren().add(shownLabel);
+        
+        // One reused cell per visible row, pages are fetched as the list scrolls
+        ObservableList<Map<String, Object>> sessions = FXCollections.observableArrayList(firstPage.getSessions());
+        ListView<Map<String, Object>> sessionsView = new ListView<>(sessions);
+        Label noDataLabel = new Label("No saved lists found.");
+        noDataLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
+        sessionsView.setPlaceholder(noDataLabel);
+        
+        SessionPage[] lastPage = { firstPage };
+        // Follows saves and deletes, later pages only carry the count they started with
+        int[] totalCount = { firstPage.getTotalCount() };
+        boolean[] pageLoading = { false };
+        Runnable showCount = () -> shownLabel.setText("Showing " + sessions.size() +
+                " of " + totalCount[0] + " lists");
+        Runnable loadNextPage = () -> {
+            if (pageLoading[0] || !lastPage[0].hasMore()) {
+                return;
+            }
+            pageLoading[0] = true;
+            SessionPage after = lastPage[0];
+            Task<SessionPage> load = new Task<SessionPage>() {
+                @Override
+                protected SessionPage call() {
+                    return databaseService.getSavedSessionsPage(after, SESSION_PAGE_SIZE);
+                }
+            };
+            load.setOnSucceeded(e -> {
+                lastPage[0] = load.getValue();
+                sessions.addAll(lastPage[0].getSessions());
+                pageLoading[0] = false;
+                showCount.run();
+            });
+            load.setOnFailed(e -> {
+                pageLoading[0] = false;
+                loggingService.logError("saved lists page", asException(load.getException()));
+            });
+            runInBackground(load, "saved-lists-loader");
+        };
+        showCount.run();
+        
+        sessionsView.setCellFactory(param -> new ListCell<Map<String, Object>>() {
+            @Override
+            protected void updateItem(Map<String, Object> session, boolean empty) {
+                super.updateItem(session, empty);
+                if (empty || session == null) {
+                    setText(null);
+                    return;
+                }
+                // Numbered by position, newest first, so numbers stay right as rows come and go
+                setText(sessionName(getIndex()) + " - " + session.get("formattedTime") +
+                        " (" + session.get("candidateCount") + " selections)");
+                // The end of the loaded sessions is in view
+                if (getIndex() == sessions.size() - 1) {
+                    loadNextPage.run();
+                }
+            }
+        });
+        
+        SplitPane split = new SplitPane(sessionsView, createSessionDetail(sessionsView));
+        split.setDividerPositions(0.5);
+        split.setPrefHeight(350);
+        
+        content.getChildren().add(split);
+        VBox.setVgrow(split, Priority.ALWAYS);
+        
+        content.getProperties().put(LIVE_UPDATES, new DatabaseService.DataListener() {
+            @Override
+            public void sessionsSaved(long version, List<Map<String, Object>> saved) {
+                // Saved in order, so each one is the newest so far
+                for (Map<String, Object> session : saved) {
+                    sessions.add(0, session);
+                }
+                totalCount[0] += saved.size();
+                showCount.run();
+            }
             
-            // Create master VBox to hold all lists
-            VBox listsContainer = new VBox(15);
-            listsContainer.setPadding(new Insets(5));
+            @Override
+            public void sessionDeleted(long version, Map<String, Object> deleted) {
+                Object sessionId = deleted.get("id");
+                sessions.removeIf(session -> sessionId.equals(session.get("id")));
+                totalCount[0]--;
+                showCount.run();
+            }
             
-            // Add each session
-            for (Map<String, Object> session : sessions) {
-                String sessionName = (String) session.get("name");
-                String formattedTime = (String) session.get("formattedTime");
-                int candidateCount = (int) session.get("candidateCount");
+            @Override
+            public void selectionsCleared(long version) {
+                sessions.clear();
+                totalCount[0] = 0;
+                showCount.run();
+            }
+        });
+        
+        return content;
+    }
+    
+    private static String sessionName(int index) {
+        return "Generated List #" + (index + 1);
+    }
+    
+    // The candidates of the session chosen on the left, fetched when it is chosen
+    private VBox createSessionDetail(ListView<Map<String, Object>> sessionsView) {
+        Label sessionLabel = new Label("Choose a list to see its candidates.");
+        sessionLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
+        sessionLabel.setWrapText(true);
+        
+        ListView<String> candidatesList = new ListView<>();
+        VBox.setVgrow(candidatesList, Priority.ALWAYS);
+        
+        // Add delete button
+        Button deleteButton = new Button("Delete This List");
+        deleteButton.setStyle("-fx-background-color: #ff5555; -fx-text-fill: white;");
+        deleteButton.setDisable(true);
+        deleteButton.setOnAction(e -> {
+            Map<String, Object> session = sessionsView.getSelectionModel().getSelectedItem();
+            if (session != null && confirmDelete("Are you sure you want to delete this list?")) {
                 String sessionId = (String) session.get("id");
-                
-                // Session header
-                TitledPane sessionPane = new TitledPane();
-                sessionPane.setText(sessionName + " - " + formattedTime + " (" + candidateCount + " selections)");
-                
-                VBox sessionContent = new VBox(10);
-                sessionContent.setPadding(new Insets(10));
-                
-                // Add delete button
-                Button deleteButton = new Button("Delete This List");
-                deleteButton.setStyle("-fx-background-color: #ff5555; -fx-text-fill: white;");
-                deleteButton.setOnAction(e -> {
-                    if (confirmDelete("Are you sure you want to delete this list?")) {
-                        if (databaseService.deleteSession(sessionId)) {
-                            loggingService.log("Deleted session: " + sessionId);
-                            refreshDialog();
-                        }
+                // The row goes away when the delete is reported back
+                runDataChange(deleteButton, () -> databaseService.deleteSession(sessionId), "delete session", deleted -> {
+                    deleteButton.setDisable(sessionsView.getSelectionModel().getSelectedItem() == null);
+                    if (deleted) {
+                        loggingService.log("Deleted session: " + sessionId);
                     }
                 });
-                HBox buttonBox = new HBox(deleteButton);
-                buttonBox.setAlignment(Pos.CENTER_RIGHT);
-                
-                // Session content - list of candidates
-                ListView<String> candidatesList = new ListView<>();
-                
-                // Get candidates for this session
-                List<Map<String, Object>> candidates = databaseService.getSessionCandidates(sessionId);
-                
+            }
+        });
+        HBox buttonBox = new HBox(deleteButton);
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+        
+        // Only the latest choice is shown, an older fetch still running is cancelled
+        List<Task<List<Map<String, Object>>>> shown = new ArrayList<>(1);
+        sessionsView.getSelectionModel().selectedItemProperty().addListener((obs, old, session) -> {
+            shown.forEach(fetch -> fetch.cancel(true));
+            shown.clear();
+            candidatesList.getItems().clear();
+            deleteButton.setDisable(session == null);
+            if (session == null) {
+                sessionLabel.setText("Choose a list to see its candidates.");
+                return;
+            }
+            sessionLabel.setText(sessionName(sessionsView.getSelectionModel().getSelectedIndex()) +
+                    " - " + session.get("formattedTime"));
+            candidatesList.setPlaceholder(new Label("Loading..."));
+            
+            String sessionId = (String) session.get("id");
+            Task<List<Map<String, Object>>> fetch = new Task<List<Map<String, Object>>>() {
+                @Override
+                protected List<Map<String, Object>> call() {
+                    return databaseService.getSessionCandidates(sessionId);
+                }
+            };
+            fetch.setOnSucceeded(e -> {
                 // Add candidates to list with their order
-                for (Map<String, Object> candidate : candidates) {
+                for (Map<String, Object> candidate : fetch.getValue()) {
                     String name = (String) candidate.get("name");
                     String list = (String) candidate.get("list");
                     int order = (int) candidate.get("order");
                     
                     candidatesList.getItems().add(String.format("#%d - %s (%s)", order, name, list));
                 }
-                
-                VBox.setVgrow(candidatesList, Priority.ALWAYS);
-                sessionContent.getChildren().addAll(candidatesList, buttonBox);
-                
-                sessionPane.setContent(sessionContent);
-                sessionPane.setExpanded(false);
-                
-                listsContainer.getChildren().add(sessionPane);
-            }
-            
-            // Add lists to a scroll pane
-            ScrollPane scrollPane = new ScrollPane(listsContainer);
-            scrollPane.setFitToWidth(true);
-            scrollPane.setPrefHeight(350);
-            
-            content.getChildren().add(scrollPane);
-            VBox.setVgrow(scrollPane, Priority.ALWAYS);
-        }
+                candidatesList.setPlaceholder(new Label("No candidates in this list."));
+            });
+            fetch.setOnFailed(e -> {
+                loggingService.logError("saved list " + sessionId, asException(fetch.getException()));
+                candidatesList.setPlaceholder(new Label("Could not load the candidates."));
+            });
+            shown.add(fetch);
+            runInBackground(fetch, "saved-list-loader");
+        });
         
-        tab.setContent(content);
-        return tab;
+        VBox detail = new VBox(10, sessionLabel, candidatesList, buttonBox);
+        detail.setPadding(new Insets(0, 0, 0, 10));
+        return detail;
     }
     
-    private Tab createIdenticalBatchesTab() {
-        Tab tab = new Tab("Selection Patterns");
+    // One shown selection pattern, its count kept current while the dialog is open
+    private static class PatternRow {
+        final String name;
+        final TitledPane pane = new TitledPane();
+        final Label countLabel = new Label();
+        int count;
         
-        // Load identical batches data
-        List<Map<String, Object>> batches = databaseService.getIdenticalSelectionBatches();
+        PatternRow(String name, int count) {
+            this.name = name;
+            this.count = count;
+            show();
+        }
         
+        void show() {
+            pane.setText(name + " (Occurred " + count + " times)");
+            countLabel.setText("This exact selection pattern has been chosen " + count + " times.");
+        }
+    }
+    
+    private VBox createIdenticalBatchesContent(List<Map<String, Object>> batches) {
         VBox content = new VBox(10);
         content.setPadding(new Insets(10));
         
+        Label noDataLabel = new Label("No selection patterns found.");
+        noDataLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
+        
         if (batches.isEmpty()) {
-            Label noDataLabel = new Label("No selection patterns found.");
-            noDataLabel.setFont(Font.font("System", FontWeight.BOLD, 14));
             content.getChildren().add(noDataLabel);
         } else {
             Label titleLabel = new Label("Identical Selection Patterns");
@@ -221,7 +668,8 @@ public class StatsDialog extends Dialog<Void> {
             
             Label descriptionLabel = new Label(
                 "This section shows patterns of identical selections - " +
-                "lists where exactly the same candidates were selected in the same order."
+                "lists where exactly the same candidates were selected in the same order. " +
+                "The " + PATTERN_LIMIT + " most frequent patterns are listed."
             );
             descriptionLabel.setWrapText(true);
             content.getChildren().add(descriptionLabel);
@@ -229,25 +677,29 @@ public class StatsDialog extends Dialog<Void> {
             // Create container for batches
             VBox batchesContainer = new VBox(15);
             batchesContainer.setPadding(new Insets(5));
+            Map<Long, PatternRow> rows = new HashMap<>();
             
             // Add each batch
             for (Map<String, Object> batch : batches) {
                 String batchName = (String) batch.get("name");
                 int count = (int) batch.get("count");
+                long fingerprint = (long) batch.get("fingerprint");
                 
                 @SuppressWarnings("unchecked")
                 List<Map<String, Object>> candidates = (List<Map<String, Object>>) batch.get("candidates");
                 
                 // Batch header
-                TitledPane batchPane = new TitledPane();
-                batchPane.setText(batchName + " (Occurred " + count + " times)");
+                PatternRow row = new PatternRow(batchName, count);
+                rows.put(fingerprint, row);
+                TitledPane batchPane = row.pane;
+                batchPane.setUserData(row);
                 
                 // Create content
                 VBox batchContent = new VBox(5);
                 batchContent.setPadding(new Insets(10));
                 
                 // Add a label for stronger emphasis on the count
-                Label countLabel = new Label("This exact selection pattern has been chosen " + count + " times.");
+                Label countLabel = row.countLabel;
                 countLabel.setFont(Font.font("System", FontWeight.BOLD, 12));
                 countLabel.setPadding(new Insets(0, 0, 10, 0));
                 batchContent.getChildren().add(countLabel);
@@ -266,6 +718,9 @@ public class StatsDialog extends Dialog<Void> {
                 batchContent.getChildren().add(candidatesList);
                 VBox.setVgrow(candidatesList, Priority.ALWAYS);
                 
+                // Sessions with this pattern are only loaded when asked for
+                batchContent.getChildren().add(createPatternSessionsBox(fingerprint));
+                
                 batchPane.setContent(batchContent);
                 batchPane.setExpanded(false);
                 
@@ -279,10 +734,177 @@ public class StatsDialog extends Dialog<Void> {
             
             content.getChildren().add(scrollPane);
             VBox.setVgrow(scrollPane, Priority.ALWAYS);
+            
+            // Only the patterns shown are followed; one that newly makes the list shows on reopening
+            BiConsumer<Long, Integer> adjust = (fingerprint, delta) -> {
+                PatternRow row = rows.get(fingerprint);
+                if (row == null) {
+                    return;
+                }
+                row.count += delta;
+                if (row.count <= 0) {
+                    rows.remove(fingerprint);
+                    batchesContainer.getChildren().remove(row.pane);
+                } else {
+                    row.show();
+                }
+                FXCollections.sort(batchesContainer.getChildren(), Comparator.comparingInt(
+                        (Node pane) -> ((PatternRow) pane.getUserData()).count).reversed());
+            };
+            content.getProperties().put(LIVE_UPDATES, new DatabaseService.DataListener() {
+                @Override
+                public void sessionsSaved(long version, List<Map<String, Object>> sessions) {
+                    for (Map<String, Object> session : sessions) {
+                        adjust.accept((Long) session.get("fingerprint"), 1);
+                    }
+                }
+                
+                @Override
+                public void sessionDeleted(long version, Map<String, Object> session) {
+                    adjust.accept((Long) session.get("fingerprint"), -1);
+                }
+                
+                @Override
+                public void selectionsCleared(long version) {
+                    rows.clear();
+                    content.getChildren().setAll(noDataLabel);
+                }
+            });
         }
         
-        tab.setContent(content);
-        return tab;
+        return content;
+    }
+    
+    private VBox createRankedScoresContent(ScoringService.Result result) {
+        VBox content = new VBox(10);
+        content.setPadding(new Insets(10));
+        
+        // Scores are recomputed from every ballot, so a change only offers a recompute
+        Label staleLabel = new Label("Ballots have changed since these scores were computed.");
+        staleLabel.setTextFill(Color.DARKORANGE);
+        Button recomputeButton = new Button("Recompute");
+        recomputeButton.setOnAction(e -> reloadTab(rankedScoresTab));
+        HBox staleBox = new HBox(10, staleLabel, recomputeButton);
+        staleBox.setAlignment(Pos.CENTER_LEFT);
+        staleBox.setVisible(false);
+        staleBox.setManaged(false);
+        content.getChildren().add(staleBox);
+        Runnable markStale = () -> {
+            staleBox.setVisible(true);
+            staleBox.setManaged(true);
+        };
+        content.getProperties().put(LIVE_UPDATES, new DatabaseService.DataListener() {
+            @Override
+            public void sessionsSaved(long version, List<Map<String, Object>> sessions) {
+                markStale.run();
+            }
+            
+            @Override
+            public void sessionDeleted(long version, Map<String, Object> session) {
+                markStale.run();
+            }
+            
+            @Override
+            public void selectionsCleared(long version) {
+                markStale.run();
+            }
+        });
+        
+        Label descriptionLabel = new Label(
+            "Borda scores give a candidate " + result.getMaxRank() + " points for each first place, " +
+            "one point less for each lower rank. The rank columns count how often each " +
+            "candidate was picked at that position."
+        );
+        descriptionLabel.setWrapText(true);
+        content.getChildren().add(descriptionLabel);
+        
+        // Each row is a candidate index into the scoring result
+        TableView<Integer> tableView = new TableView<>();
+        
+        TableColumn<Integer, String> candidateColumn = new TableColumn<>("Candidate");
+        candidateColumn.setCellValueFactory(param -> 
+                javafx.beans.binding.Bindings.createStringBinding(
+                        () -> result.getList(param.getValue()) + ": " + result.getName(param.getValue())));
+        candidateColumn.setPrefWidth(200);
+        tableView.getColumns().add(candidateColumn);
+        
+        TableColumn<Integer, Number> scoreColumn = new TableColumn<>("Borda Score");
+        scoreColumn.setCellValueFactory(param -> 
+                javafx.beans.binding.Bindings.createDoubleBinding(
+                        () -> result.getScore(param.getValue())));
+        scoreColumn.setStyle("-fx-alignment: CENTER-RIGHT;");
+        tableView.getColumns().add(scoreColumn);
+        
+        for (int rank = 1; rank <= result.getMaxRank(); rank++) {
+            int columnRank = rank;
+            TableColumn<Integer, Number> rankColumn = new TableColumn<>("#" + rank);
+            rankColumn.setCellValueFactory(param -> 
+                    javafx.beans.binding.Bindings.createLongBinding(
+                            () -> result.getRankCount(param.getValue(), columnRank)));
+            rankColumn.setStyle("-fx-alignment: CENTER-RIGHT;");
+            tableView.getColumns().add(rankColumn);
+        }
+        
+        for (int i = 0; i < result.getCandidateCount(); i++) {
+            tableView.getItems().add(i);
+        }
+        
+        // Sort by score descending
+        tableView.getSortOrder().add(scoreColumn);
+        scoreColumn.setSortType(TableColumn.SortType.DESCENDING);
+        tableView.sort();
+        
+        VBox.setVgrow(tableView, Priority.ALWAYS);
+        content.getChildren().add(tableView);
+        
+        Label summaryLabel = new Label(String.format(
+                "%,d ballots scored (loaded in %d ms, computed in %d ms)",
+                result.getBallotCount(), result.getLoadMs(), result.getComputeMs()));
+        summaryLabel.setPadding(new Insets(10, 0, 0, 0));
+        content.getChildren().add(summaryLabel);
+        
+        return content;
+    }
+    
+    private VBox createPatternSessionsBox(long fingerprint) {
+        ListView<String> sessionsList = new ListView<>();
+        sessionsList.setPrefHeight(150);
+        sessionsList.setVisible(false);
+        sessionsList.setManaged(false);
+        
+        Button showButton = new Button("Show Lists With This Pattern");
+        SessionPage[] lastPage = { null };
+        showButton.setOnAction(e -> {
+            SessionPage after = lastPage[0];
+            Task<SessionPage> load = new Task<SessionPage>() {
+                @Override
+                protected SessionPage call() {
+                    return databaseService.getPatternSessions(fingerprint, after, SESSION_PAGE_SIZE);
+                }
+            };
+            load.setOnSucceeded(done -> {
+                lastPage[0] = load.getValue();
+                for (Map<String, Object> session : lastPage[0].getSessions()) {
+                    sessionsList.getItems().add(session.get("formattedTime") + " (session " + session.get("id") + ")");
+                }
+                sessionsList.setVisible(true);
+                sessionsList.setManaged(true);
+                showButton.setText("Show More");
+                showButton.setDisable(!lastPage[0].hasMore());
+            });
+            load.setOnFailed(failed -> {
+                showButton.setDisable(false);
+                loggingService.logError("pattern sessions page", asException(load.getException()));
+            });
+            // One page at a time, so pages are appended in order
+            showButton.setDisable(true);
+            runInBackground(load, "pattern-sessions-loader");
+        });
+        
+        HBox buttonBox = new HBox(showButton);
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+        
+        return new VBox(5, sessionsList, buttonBox);
     }
     
     private Tab createDataManagementTab() {
@@ -308,10 +930,10 @@ public class StatsDialog extends Dialog<Void> {
         // 1. Clear logs section
         TitledPane logsPane = createDataSection(
             "Application Logs",
-            "Clear the application log file (log.txt). " +
+            "Clear the application log file (log.txt) and its rotated archives. " +
             "This removes all recorded actions and events.",
             "Clear All Logs",
-            () -> {
+            button -> {
                 if (confirmDelete("Are you sure you want to delete all logs?")) {
                     boolean success = loggingService.clearLogs();
                     if (success) {
@@ -329,7 +951,7 @@ public class StatsDialog extends Dialog<Void> {
             "Delete all PDF reports from the output directory. " +
             "This removes all selection reports that have been generated.",
             "Delete All PDFs",
-            () -> {
+            button -> {
                 if (confirmDelete("Are you sure you want to delete all PDF files?")) {
                     boolean success = pdfService.clearPdfs();
                     if (success) {
@@ -348,29 +970,179 @@ public class StatsDialog extends Dialog<Void> {
             "Clear all selection data from the database. " +
             "This will remove all saved selections and reset all statistics.",
             "Clear All Selection Data",
-            () -> {
+            button -> {
                 if (confirmDelete("Are you sure you want to delete ALL selection data?\n" +
                         "This will reset all statistics and cannot be undone.")) {
-                    boolean success = databaseService.clearAllSelections();
-                    if (success) {
-                        showInfoDialog("Data Cleared", "All selection data has been successfully cleared.");
-                        loggingService.log("Cleared all selection data");
-                        refreshDialog();
+                    runDataChange(button, databaseService::clearAllSelections, "clear selections", success -> {
+                        if (success) {
+                            showInfoDialog("Data Cleared", "All selection data has been successfully cleared.");
+                            loggingService.log("Cleared all selection data");
+                        } else {
+                            showErrorDialog("Error", "Failed to clear selection data.");
+                        }
+                    });
+                }
+            }
+        );
+        
+        // 4. Reconcile counts section
+        TitledPane reconcilePane = createDataSection(
+            "Selection Counts",
+            "Recount every candidate's selection total from the saved lists and " +
+            "correct any that have drifted. This scans all saved selections.",
+            "Reconcile Counts",
+            button -> {
+                runDataChange(button, databaseService::reconcileCounts, "reconcile counts", report -> {
+                    if (report.containsKey("error")) {
+                        showErrorDialog("Error", "Failed to reconcile counts: " + report.get("error"));
                     } else {
-                        showErrorDialog("Error", "Failed to clear selection data.");
+                        showInfoDialog("Counts Reconciled", String.format(
+                                "Checked all candidates in %d ms. %d candidate counts were corrected.",
+                                (long) report.get("elapsedMs"), (int) report.get("driftedCandidates")));
                     }
-                }
+                });
             }
         );
         
+        // 5. Bulk PDF export section
+        TitledPane exportPane = createExportSection();
+        
+        // 6. Consolidated results report section
+        TitledPane reportPane = createResultsReportSection();
+        
         // Add all sections to main content
-        content.getChildren().addAll(logsPane, pdfsPane, databasePane);
+        content.getChildren().addAll(logsPane, pdfsPane, databasePane, reconcilePane, exportPane, reportPane);
         
         tab.setContent(content);
         return tab;
     }
     
-    private TitledPane createDataSection(String title, String description, String buttonText, Runnable action) {
+    private TitledPane createExportSection() {
+        TitledPane section = new TitledPane();
+        section.setText("PDF Receipts");
+        section.setExpanded(false);
+        
+        VBox sectionContent = new VBox(10);
+        sectionContent.setPadding(new Insets(10));
+        
+        Label descLabel = new Label("Regenerate the PDF report of every list saved in the chosen date range " +
+                "into the output directory. Leave a date empty to include everything before or after.");
+        descLabel.setWrapText(true);
+        
+        DatePicker fromPicker = new DatePicker();
+        fromPicker.setPromptText("From");
+        DatePicker toPicker = new DatePicker();
+        toPicker.setPromptText("To (inclusive)");
+        HBox rangeBox = new HBox(10, new Label("Saved between"), fromPicker, new Label("and"), toPicker);
+        rangeBox.setAlignment(Pos.CENTER_LEFT);
+        
+        Label progressLabel = new Label();
+        Button exportButton = new Button("Export Receipts");
+        exportButton.setOnAction(e -> {
+            // Saved timestamps start with yyyy-MM-dd, so plain string bounds select whole days
+            String from = fromPicker.getValue() != null ? fromPicker.getValue().toString() : null;
+            String to = toPicker.getValue() != null ? toPicker.getValue().plusDays(1).toString() : null;
+            
+            exportButton.setDisable(true);
+            progressLabel.setText("Exporting...");
+            ReportExportService exportService = new ReportExportService(databaseService, pdfService);
+            Thread worker = new Thread(() -> {
+                try {
+                    Map<String, Object> summary = exportService.export(from, to, null,
+                            ReportExportService.defaultThreads(), done -> {
+                                if (done % 100 == 0) {
+                                    Platform.runLater(() -> progressLabel.setText(done + " reports written..."));
+                                }
+                            });
+                    String message = String.format("Exported %d reports (%d pages) in %d ms, %.0f pages/sec.",
+                            (int) summary.get("sessions"), (long) summary.get("pages"),
+                            (long) summary.get("elapsedMs"), (double) summary.get("pagesPerSecond"));
+                    loggingService.log(message + " Failed: " + summary.get("failed"));
+                    Platform.runLater(() -> {
+                        exportButton.setDisable(false);
+                        progressLabel.setText("");
+                        if ((int) summary.get("failed") > 0) {
+                            showErrorDialog("Export Incomplete", message + "\n" + summary.get("failed") +
+                                    " reports could not be written.");
+                        } else {
+                            showInfoDialog("Receipts Exported", message + "\nFiles are in " + summary.get("directory"));
+                        }
+                    });
+                } catch (Exception ex) {
+                    loggingService.logError("PDF export", ex);
+                    Platform.runLater(() -> {
+                        exportButton.setDisable(false);
+                        progressLabel.setText("");
+                        showErrorDialog("Error", "Failed to export receipts: " + ex.getMessage());
+                    });
+                }
+            }, "pdf-export-reader");
+            worker.setDaemon(true);
+            worker.start();
+        });
+        
+        HBox buttonBox = new HBox(10, progressLabel, exportButton);
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+        buttonBox.setPadding(new Insets(10, 0, 0, 0));
+        
+        sectionContent.getChildren().addAll(descLabel, rangeBox, buttonBox);
+        section.setContent(sectionContent);
+        
+        return section;
+    }
+    
+    private TitledPane createResultsReportSection() {
+        TitledPane section = new TitledPane();
+        section.setText("Results Report");
+        section.setExpanded(false);
+        
+        VBox sectionContent = new VBox(10);
+        sectionContent.setPadding(new Insets(10));
+        
+        Label descLabel = new Label("Write candidate statistics, the most common selection patterns and " +
+                "every saved list to a single PDF in the output directory.");
+        descLabel.setWrapText(true);
+        
+        Label progressLabel = new Label();
+        Button reportButton = new Button("Generate Results Report");
+        reportButton.setOnAction(e -> {
+            reportButton.setDisable(true);
+            progressLabel.setText("Generating...");
+            Thread worker = new Thread(() -> {
+                Map<String, Object> summary = pdfService.generateStatisticsReport(databaseService);
+                String message = summary.containsKey("error") ? null : String.format(
+                        "Wrote %d saved lists on %d pages in %d ms (peak heap %d MB).",
+                        (int) summary.get("sessions"), (int) summary.get("pages"), (long) summary.get("elapsedMs"),
+                        (long) summary.get("peakHeapBytes") / (1024 * 1024));
+                if (message != null) {
+                    loggingService.log("Results report " + summary.get("filename") + ": " + message);
+                }
+                Platform.runLater(() -> {
+                    reportButton.setDisable(false);
+                    progressLabel.setText("");
+                    if (message == null) {
+                        showErrorDialog("Error", "Failed to generate the results report: " + summary.get("error"));
+                    } else {
+                        showInfoDialog("Report Generated", message + "\nSaved to " + summary.get("filename"));
+                    }
+                });
+            }, "results-report");
+            worker.setDaemon(true);
+            worker.start();
+        });
+        
+        HBox buttonBox = new HBox(10, progressLabel, reportButton);
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+        buttonBox.setPadding(new Insets(10, 0, 0, 0));
+        
+        sectionContent.getChildren().addAll(descLabel, buttonBox);
+        section.setContent(sectionContent);
+        
+        return section;
+    }
+    
+    // The action gets the section's button, to disable it while work runs in the background
+    private TitledPane createDataSection(String title, String description, String buttonText, Consumer<Button> action) {
         TitledPane section = new TitledPane();
         section.setText(title);
         section.setExpanded(false);
@@ -385,7 +1157,7 @@ public class StatsDialog extends Dialog<Void> {
         // Add action button
         Button actionButton = new Button(buttonText);
         actionButton.setStyle("-fx-background-color: #ff5555; -fx-text-fill: white;");
-        actionButton.setOnAction(e -> action.run());
+        actionButton.setOnAction(e -> action.accept(actionButton));
         
         HBox buttonBox = new HBox(actionButton);
         buttonBox.setAlignment(Pos.CENTER_RIGHT);
@@ -425,12 +1197,4 @@ public class StatsDialog extends Dialog<Void> {
         alert.initOwner(getDialogPane().getScene().getWindow());
         alert.showAndWait();
     }
-    
-    private void refreshDialog() {
-        // Close and reopen the dialog to refresh content
-        Window owner = getDialogPane().getScene().getWindow();
-        close();
-        StatsDialog newDialog = new StatsDialog(owner);
-        newDialog.show();
-    }
 } 
\ No newline at end of file
@@ -0,0 +1,152 @@
+package com.election.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RankedSelectionTest {
+
+    @Test
+    void addRanksInOrder() {
+        RankedSelection<String> selection = new RankedSelection<>();
+        assertTrue(selection.isEmpty());
+        assertTrue(selection.add("a"));
+        assertTrue(selection.add("b"));
+        assertTrue(selection.add("c"));
+
+        assertEquals(List.of("a", "b", "c"), selection.toList());
+        assertEquals(3, selection.size());
+        assertEquals(1, selection.rankOf("a"));
+        assertEquals(3, selection.rankOf("c"));
+        assertEquals("b", selection.get(2));
+        assertEquals(0, selection.rankOf("d"));
+    }
+
+    @Test
+    void duplicatesAreRejected() {
+        RankedSelection<String> selection = new RankedSelection<>();
+        selection.add("a");
+        selection.add("b");
+
+        assertFalse(selection.add("a"));
+        assertFalse(selection.insert(1, "b"));
+        assertEquals(List.of("a", "b"), selection.toList());
+    }
+
+    @Test
+    void removeRenumbersTheRest() {
+        RankedSelection<String> selection = new RankedSelection<>();
+        for (String element : List.of("a", "b", "c", "d")) {
+            selection.add(element);
+        }
+
+        assertEquals(2, selection.remove("b"));
+        assertEquals(List.of("a", "c", "d"), selection.toList());
+        assertEquals(2, selection.rankOf("c"));
+        assertEquals(3, selection.rankOf("d"));
+        assertEquals(0, selection.rankOf("b"));
+
+        // Not selected: nothing changes
+        assertEquals(0, selection.remove("b"));
+        assertEquals(3, selection.size());
+
+        // A removed element can be added again, at the end
+        assertTrue(selection.add("b"));
+        assertEquals(4, selection.rankOf("b"));
+    }
+
+    @Test
+    void forEachRankedVisitsInRankOrder() {
+        RankedSelection<String> selection = new RankedSelection<>();
+        for (String element : List.of("a", "b", "c", "d", "e")) {
+            selection.add(element);
+        }
+        selection.move("e", 1);
+
+        List<String> visited = new ArrayList<>();
+        selection.forEachRanked((element, rank) -> visited.add(rank + ":" + element));
+        assertEquals(List.of("1:e", "2:a", "3:b", "4:c", "5:d"), visited);
+
+        visited.clear();
+        selection.forEachRanked(2, 4, (element, rank) -> visited.add(rank + ":" + element));
+        assertEquals(List.of("2:a", "3:b", "4:c"), visited);
+    }
+
+    @Test
+    void ranksOutOfRangeAreRejected() {
+        RankedSelection<String> selection = new RankedSelection<>();
+        selection.add("a");
+
+        assertThrows(IndexOutOfBoundsException.class, () -> selection.get(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> selection.insert(3, "b"));
+        assertThrows(IndexOutOfBoundsException.class, () -> selection.move("a", 0));
+        assertEquals(List.of("a"), selection.toList());
+    }
+
+    // Random operations checked against a plain list, where rank is index + 1
+    @Test
+    void matchesListReference() {
+        Random random = new Random(42);
+        RankedSelection<Integer> selection = new RankedSelection<>();
+        List<Integer> reference = new ArrayList<>();
+
+        for (int step = 0; step < 20_000; step++) {
+            Integer element = random.nextInt(300);
+            int operation = random.nextInt(4);
+            if (operation == 0) {
+                assertEquals(!reference.contains(element), selection.add(element));
+                if (!reference.contains(element)) {
+                    reference.add(element);
+                }
+            } else if (operation == 1) {
+                int rank = 1 + random.nextInt(reference.size() + 1);
+                boolean added = !reference.contains(element);
+                assertEquals(added, selection.insert(rank, element));
+                if (added) {
+                    reference.add(rank - 1, element);
+                }
+            } else if (operation == 2) {
+                int index = reference.indexOf(element);
+                assertEquals(index + 1, selection.remove(element));
+                if (index >= 0) {
+                    reference.remove(index);
+                }
+            } else if (!reference.isEmpty()) {
+                int rank = 1 + random.nextInt(reference.size());
+                int index = reference.indexOf(element);
+                assertEquals(index + 1, selection.move(element, rank));
+                if (index >= 0) {
+                    reference.remove(index);
+                    reference.add(rank - 1, element);
+                }
+            }
+
+            if (step % 100 == 0) {
+                assertMatches(reference, selection);
+            }
+        }
+        assertMatches(reference, selection);
+    }
+
+    private static void assertMatches(List<Integer> reference, RankedSelection<Integer> selection) {
+        assertEquals(reference, selection.toList());
+        assertEquals(reference.size(), selection.size());
+        for (int i = 0; i < reference.size(); i++) {
+            assertEquals(reference.get(i), selection.get(i + 1));
+            assertEquals(i + 1, selection.rankOf(reference.get(i)));
+        }
+        List<Integer> visited = new ArrayList<>();
+        selection.forEachRanked((element, rank) -> {
+            assertEquals(visited.size() + 1, rank);
+            visited.add(element);
+        });
+        assertEquals(reference, visited);
+    }
+}